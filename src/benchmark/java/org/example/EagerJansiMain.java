@@ -0,0 +1,19 @@
+package org.example;
+
+import org.fusesource.jansi.AnsiConsole;
+
+/**
+ * Запуск утилиты с прежней инициализацией Jansi: {@link AnsiConsole#systemInstall()} вызывается при старте всегда,
+ * даже если вывод перенаправлен. Используется в {@code ./gradlew startupBenchmark}, чтобы сравнить время до первого вывода
+ * с текущей инициализацией ({@link Style#init()} загружает Jansi только для вывода в терминал)
+ */
+public class EagerJansiMain {
+    public static void main(String[] args) {
+        AnsiConsole.systemInstall();
+        try {
+            Main.main(args);
+        } finally {
+            AnsiConsole.systemUninstall();
+        }
+    }
+}
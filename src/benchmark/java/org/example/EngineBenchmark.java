@@ -0,0 +1,157 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Сравнение пропускной способности {@link Engine} для данных в памяти и для файлов (как в утилите командной строки).
+ * Запуск: {@code ./gradlew engineBenchmark} (количество строк можно передать аргументом: {@code --args=5000000}).
+ * Каждый сценарий выполняется в отдельной JVM, чтобы профиль JIT-компилятора одного сценария не влиял на другой.
+ * <p>Сценарии:
+ * <p>файлы - входной файл на диске, выходные файлы через {@link FileHandler} и {@link WriterHandler};
+ * <p>файлы, --stream - то же, но строки передаются в файлы и статистику через {@link RecordPublisher} и его подписчиков;
+ * <p>ByteBuffer - те же байты в памяти ({@link LineSource#of(ByteBuffer)}), приемники пишут в {@link ByteArrayOutputStream};
+ * <p>Iterator - те же строки в виде {@link String} ({@link LineSource#of(java.util.Iterator)}), приемники пишут в {@link ByteArrayOutputStream};
+ * <p>ByteBuffer без записи - только классификация и статистика ({@link LaneSinks#discard()}).
+ */
+public class EngineBenchmark {
+    private static final int WARMUP = 3;
+    private static final int RUNS = 5;
+    private static final List<String> SCENARIOS = List.of("files", "stream", "buffer", "iterator", "stats");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setOut(new PrintStream(System.out, true, StandardCharsets.UTF_8));
+
+        int lineCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        if (args.length < 2) {
+            forkAll(lineCount);
+            return;
+        }
+        String scenario = args[1];
+
+        // Входные данные: целые числа, вещественные числа и строки вперемешку
+        List<String> lines = generate(lineCount);
+        byte[] data = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        Path dir = Files.createTempDirectory("engine-benchmark");
+        File inputFile = dir.resolve("input.txt").toFile();
+        Files.write(inputFile.toPath(), data);
+
+        Engine engine = Engine.builder().build();
+
+        switch (scenario) {
+            case "files" -> measure("файлы", data.length, lineCount, () -> {
+                StatCalculator statCalculator = new StatCalculator();
+                new FileHandler(new WriterHandler(false), statCalculator, engine, false).readAndWrite(List.of(inputFile.getPath()),
+                        new File(dir.toFile(), "integers.txt"), new File(dir.toFile(), "floats.txt"), new File(dir.toFile(), "strings.txt"));
+                return statCalculator.snapshot();
+            });
+            case "stream" -> measure("файлы, --stream", data.length, lineCount, () -> {
+                StatCalculator statCalculator = new StatCalculator();
+                new FileHandler(new WriterHandler(false), statCalculator, engine, true).readAndWrite(List.of(inputFile.getPath()),
+                        new File(dir.toFile(), "integers.txt"), new File(dir.toFile(), "floats.txt"), new File(dir.toFile(), "strings.txt"));
+                return statCalculator.snapshot();
+            });
+            case "buffer" -> measure("ByteBuffer", data.length, lineCount,
+                    () -> engine.run(LineSource.of(ByteBuffer.wrap(data)), memorySinks(data.length)));
+            case "stats" -> measure("ByteBuffer, без записи", data.length, lineCount,
+                    () -> engine.run(LineSource.of(ByteBuffer.wrap(data)), LaneSinks.discard()));
+            case "iterator" -> measure("Iterator<String>", data.length, lineCount,
+                    () -> engine.run(LineSource.of(lines.iterator()), memorySinks(data.length)));
+            default -> throw new IllegalArgumentException("Неизвестный сценарий: " + scenario + ", ожидается один из " + SCENARIOS);
+        }
+
+        for (File file : dir.toFile().listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Запускает каждый сценарий в отдельной JVM с теми же параметрами и classpath
+     */
+    private static void forkAll(int lineCount) throws IOException, InterruptedException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        List<String> jvmArgs = ManagementFactory.getRuntimeMXBean().getInputArguments();
+
+        System.out.printf("Строк: %d (медиана %d запусков после %d прогревочных)%n", lineCount, RUNS, WARMUP);
+        for (String scenario : SCENARIOS) {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.addAll(jvmArgs);
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), EngineBenchmark.class.getName(),
+                    String.valueOf(lineCount), scenario));
+
+            int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+            if (exitCode != 0) {
+                throw new IllegalStateException("Сценарий " + scenario + " завершился с кодом " + exitCode);
+            }
+        }
+    }
+
+    /**
+     * Выполняет сценарий несколько раз и выводит медиану времени и пропускную способность.
+     * Количество обработанных строк сверяется с количеством входных строк
+     */
+    private static void measure(String name, long bytes, int lineCount, Supplier<Statistics> scenario) {
+        long[] times = new long[RUNS];
+        for (int run = -WARMUP; run < RUNS; run++) {
+            long start = System.nanoTime();
+            Statistics stat = scenario.get();
+            long time = System.nanoTime() - start;
+
+            if (stat.cntInt() + stat.cntFloat() + stat.cntStr() != lineCount) {
+                throw new IllegalStateException(name + ": обработано " + (stat.cntInt() + stat.cntFloat() + stat.cntStr()) + " строк");
+            }
+            if (run >= 0) {
+                times[run] = time;
+            }
+        }
+
+        Arrays.sort(times);
+        double seconds = times[RUNS / 2] / 1e9;
+        System.out.printf("%-24s %8.1f мс %8.1f МБ/с %8.2f млн строк/с (%.1f МБ)%n",
+                name, seconds * 1e3, bytes / 1e6 / seconds, lineCount / 1e6 / seconds, bytes / 1e6);
+    }
+
+    private static LaneSinks memorySinks(int capacity) {
+        return new LaneSinks(
+                LineSink.of(new ByteArrayOutputStream(capacity / 2)),
+                LineSink.of(new ByteArrayOutputStream(capacity / 4)),
+                LineSink.of(new ByteArrayOutputStream(capacity / 2)));
+    }
+
+    private static List<String> generate(int lineCount) {
+        Random random = new Random(42);
+        String[] words = {"Lorem", "ipsum", "dolor", "sit", "amet", "Съешь", "же", "ещё", "этих", "мягких", "французских", "булок"};
+
+        List<String> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            int kind = random.nextInt(10);
+            if (kind < 4) {
+                lines.add(String.valueOf(random.nextLong() >> random.nextInt(64)));
+            } else if (kind < 6) {
+                lines.add(String.valueOf(random.nextGaussian() * 1000));
+            } else {
+                StringBuilder line = new StringBuilder(words[random.nextInt(words.length)]);
+                for (int w = random.nextInt(6); w > 0; w--) {
+                    line.append(' ').append(words[random.nextInt(words.length)]);
+                }
+                lines.add(line.toString());
+            }
+        }
+        return lines;
+    }
+}
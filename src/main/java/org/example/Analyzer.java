@@ -17,7 +17,11 @@ import java.util.Objects;
  * <p>{@link Analyzer#statCalculator}
  * <p>Имеет методы:
  * <p>{@link Analyzer#analyze()}
+ * <p>{@link Analyzer#watch()}
+ * <p>{@link Analyzer#shard()}
+ * <p>{@link Analyzer#merge()}
  * <p>{@link Analyzer#getPath()}
+ * <p>{@link Analyzer#getOutputFile(String, String)}
  * <p>{@link Analyzer#getOutputFiles(File, File, File)}
  */
 @RequiredArgsConstructor
@@ -47,9 +51,9 @@ public class Analyzer {
         String outputPath = getPath();
 
         // Выходные файлы
-        File intFile = new File(outputPath + "integers.txt");
-        File floatFile = new File(outputPath + "floats.txt");
-        File strFile = new File(outputPath + "strings.txt");
+        File intFile = getOutputFile(outputPath, "integers.txt");
+        File floatFile = getOutputFile(outputPath, "floats.txt");
+        File strFile = getOutputFile(outputPath, "strings.txt");
 
         fileHandler.readAndWrite(parameters.inputFiles(), intFile, floatFile, strFile);
         // Вывод созданных выходных файлов
@@ -60,6 +64,59 @@ public class Analyzer {
         System.out.println(Style.setOut("\nПрограмма успешно завершила работу", true));
     }
 
+    /**
+     * Метод для режима службы (опция -w). Получает путь до выходных файлов с помощью метода {@link Analyzer#getPath()}
+     * и передает управление {@link DirectoryWatcher#watch()}, который обрабатывает новые файлы в директории, пока программу не остановят
+     * @return {@code false}, если наблюдение не удалось начать или оно прервалось из-за ошибки
+     */
+    public boolean watch() {
+        String outputPath = getPath();
+
+        // Выходные файлы
+        File intFile = getOutputFile(outputPath, "integers.txt");
+        File floatFile = getOutputFile(outputPath, "floats.txt");
+        File strFile = getOutputFile(outputPath, "strings.txt");
+
+        return new DirectoryWatcher(parameters, fileHandler, statCalculator, intFile, floatFile, strFile).watch();
+    }
+
+    /**
+     * Метод для обработки одного шарда (опция --shard i/n) с помощью {@link ShardHandler#readAndWrite(List, String)}.
+     * Выводит директорию шарда и статистику по части данных, которую обработал шард
+     * @see Style#setOut(String, boolean)
+     */
+    public void shard() {
+        File shardDir = new ShardHandler(parameters, statCalculator).readAndWrite(parameters.inputFiles(), getPath());
+
+        if (shardDir != null) {
+            System.out.println(Style.setOut("\nРезультат:\n", true)
+                    + "    Шард " + parameters.shardIndex() + "/" + parameters.shardCount() + " записан в директорию:\n        " + shardDir);
+            statCalculator.printStat(parameters);
+            System.out.println(Style.setOut("\nПрограмма успешно завершила работу", true));
+        }
+    }
+
+    /**
+     * Метод для команды merge. Объединяет результаты шардов с помощью {@link ShardMerger#merge(String, File, File, File)}
+     * и выводит выходные файлы и статистику так же, как {@link Analyzer#analyze()}
+     * @see Style#setOut(String, boolean)
+     */
+    public void merge() {
+        String outputPath = getPath();
+
+        // Выходные файлы
+        File intFile = getOutputFile(outputPath, "integers.txt");
+        File floatFile = getOutputFile(outputPath, "floats.txt");
+        File strFile = getOutputFile(outputPath, "strings.txt");
+
+        if (new ShardMerger(parameters, statCalculator).merge(outputPath, intFile, floatFile, strFile)) {
+            System.out.println(Style.setOut("\nРезультат:\n", true)
+                    + "    Выходные файлы (созданные или измененные):\n" + getOutputFiles(intFile, floatFile, strFile));
+            statCalculator.printStat(parameters);
+            System.out.println(Style.setOut("\nПрограмма успешно завершила работу", true));
+        }
+    }
+
     /**
      * Метод для получения пути до выходных файлов.
      * Использует данные из {@link Parameters#path()} и {@link Parameters#prefix()}.
@@ -73,6 +130,16 @@ public class Analyzer {
                 + Objects.requireNonNullElse(parameters.prefix(), "");
     }
 
+    /**
+     * Метод для получения выходного файла. Если задана опция --gzip, то к имени файла добавляется расширение {@code .gz}
+     * @param outputPath путь до выходных файлов (с префиксом)
+     * @param name имя файла
+     * @return выходной файл
+     */
+    private File getOutputFile(String outputPath, String name) {
+        return new File(outputPath + name + (parameters.gzipLevel() != null ? ".gz" : ""));
+    }
+
     /**
      * Метод для вывода выходных файлов. Если количество добавленных в соответствующий файл элементов не равно нулю и этот файл существует,
      * тогда этот файл добавляется в строку
@@ -0,0 +1,105 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Источник строк из {@link ByteBuffer} ({@link LineSource#of(ByteBuffer)}).
+ * Если у буфера есть массив ({@link ByteBuffer#hasArray()}), то строки не копируются: {@link ByteBufferLineSource#bytes()} возвращает сам массив буфера.
+ * Иначе (например, для буфера {@link ByteBuffer#allocateDirect(int)} или отображенного в память файла) каждая строка копируется в один и тот же массив
+ */
+class ByteBufferLineSource implements LineSource {
+    private final ByteBuffer buffer;
+    private final byte[] array;
+    private final int arrayOffset;
+    private final int limit;
+    private int pos;
+
+    /**
+     * Массив для копирования строк из буфера без доступного массива
+     */
+    private byte[] line = new byte[0];
+    private int lineOffset = 0;
+    private int lineLength = 0;
+
+    /**
+     * @param buffer данные от позиции до предела буфера
+     */
+    ByteBufferLineSource(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.array = buffer.hasArray() ? buffer.array() : null;
+        this.arrayOffset = buffer.hasArray() ? buffer.arrayOffset() : 0;
+        this.pos = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    @Override
+    public boolean readLine() {
+        if (pos >= limit) {
+            return false;
+        }
+
+        int start = pos;
+        int end = array != null ? findLineEnd(start) : findLineEndAbsolute(start);
+
+        // Пропуск разделителя строк (\n, \r или \r\n)
+        pos = end;
+        if (pos < limit && get(pos++) == '\r' && pos < limit && get(pos) == '\n') {
+            pos++;
+        }
+
+        lineLength = end - start;
+        if (array != null) {
+            lineOffset = arrayOffset + start;
+        } else {
+            if (line.length < lineLength) {
+                line = new byte[Math.max(lineLength, line.length * 2)];
+            }
+            buffer.get(start, line, 0, lineLength);
+            lineOffset = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public byte[] bytes() {
+        return array != null ? array : line;
+    }
+
+    @Override
+    public int offset() {
+        return lineOffset;
+    }
+
+    @Override
+    public int length() {
+        return lineLength;
+    }
+
+    private int findLineEnd(int from) {
+        int i = from;
+        while (i < limit) {
+            byte b = array[arrayOffset + i];
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private int findLineEndAbsolute(int from) {
+        int i = from;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private byte get(int index) {
+        return array != null ? array[arrayOffset + index] : buffer.get(index);
+    }
+}
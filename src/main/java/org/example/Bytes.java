@@ -0,0 +1,79 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Класс-ключ для строки в виде байтов UTF-8. Используется в {@link HeavyHitters}, чтобы считать частоты строк,
+ * которые копируются в выходной файл без создания {@link String}.
+ * <p>Для поиска используется один изменяемый экземпляр-«зонд» ({@link Bytes#set(byte[], int, int)}), который ссылается на буфер ридера.
+ * В {@link HeavyHitters} сохраняется только копия ({@link Bytes#copy()}), поэтому память выделяется лишь для новых значений
+ */
+public final class Bytes {
+    private byte[] array;
+    private int offset;
+    private int length;
+    private int hash;
+
+    /**
+     * Создает пустой экземпляр-«зонд»
+     */
+    public Bytes() {
+        this.array = new byte[0];
+    }
+
+    /**
+     * @param array байты строки (не копируются)
+     */
+    public Bytes(byte[] array) {
+        set(array, 0, array.length);
+    }
+
+    /**
+     * Указывает на строку в буфере без копирования
+     * @param array буфер
+     * @param offset индекс первого байта строки
+     * @param length длина строки в байтах
+     * @return этот же экземпляр
+     */
+    public Bytes set(byte[] array, int offset, int length) {
+        this.array = array;
+        this.offset = offset;
+        this.length = length;
+
+        int h = 1;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + array[i];
+        }
+        this.hash = h;
+        return this;
+    }
+
+    /**
+     * @return независимая копия, которую можно хранить после изменения буфера
+     */
+    public Bytes copy() {
+        return new Bytes(Arrays.copyOfRange(array, offset, offset + length));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Bytes other) || hash != other.hash) {
+            return false;
+        }
+        return Arrays.equals(array, offset, offset + length, other.array, other.offset, other.offset + other.length);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return new String(array, offset, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,81 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Строка после классификации, которую публикует {@link RecordPublisher}: значение нужного типа, имя источника и номер строки в нем
+ * (с 1, пустые строки тоже учитываются).
+ * <p>Записи создаются для строк, которые прошли фильтр {@link LineFilter}. С опцией --stat-all публикуются и строки, которые фильтр отклонил:
+ * у них {@link ClassifiedRecord#accepted()} равно {@code false}, статистика их учитывает, а выходные файлы - нет
+ */
+public sealed interface ClassifiedRecord permits ClassifiedRecord.IntRecord, ClassifiedRecord.FloatRecord, ClassifiedRecord.StringRecord {
+    /**
+     * @return имя источника (например, входного файла)
+     */
+    String source();
+
+    /**
+     * @return номер строки в источнике
+     */
+    long lineNumber();
+
+    /**
+     * @return {@code false}, если строку отклонил фильтр (такие записи публикуются только с опцией --stat-all)
+     */
+    boolean accepted();
+
+    /**
+     * @return тип строки
+     */
+    Lane lane();
+
+    /**
+     * Целое число
+     * @param value значение
+     * @param source имя источника
+     * @param lineNumber номер строки в источнике
+     * @param accepted прошла ли строка фильтр
+     */
+    record IntRecord(long value, String source, long lineNumber, boolean accepted) implements ClassifiedRecord {
+        @Override
+        public Lane lane() {
+            return Lane.INTEGERS;
+        }
+    }
+
+    /**
+     * Вещественное число
+     * @param value значение
+     * @param source имя источника
+     * @param lineNumber номер строки в источнике
+     * @param accepted прошла ли строка фильтр
+     */
+    record FloatRecord(double value, String source, long lineNumber, boolean accepted) implements ClassifiedRecord {
+        @Override
+        public Lane lane() {
+            return Lane.FLOATS;
+        }
+    }
+
+    /**
+     * Строка в виде байтов UTF-8 (копия строки источника, без декодирования в {@link String}).
+     * Массив принадлежит записи и не должен изменяться подписчиками
+     * @param bytes строка в кодировке UTF-8
+     * @param source имя источника
+     * @param lineNumber номер строки в источнике
+     * @param accepted прошла ли строка фильтр
+     */
+    record StringRecord(byte[] bytes, String source, long lineNumber, boolean accepted) implements ClassifiedRecord {
+        /**
+         * @return строка, декодированная из UTF-8
+         */
+        public String value() {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Lane lane() {
+            return Lane.STRINGS;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package org.example;
+
+import lombok.RequiredArgsConstructor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс для режима службы: наблюдает за директорией с помощью {@link WatchService} и обрабатывает каждый новый входной файл,
+ * не перезапуская JVM.
+ * Использована аннотация {@link RequiredArgsConstructor} библиотеки <a href="https://projectlombok.org/">Lombok</a> для создания конструктора.
+ * <p>Файл считается полностью записанным, если его размер и время изменения не поменялись за один интервал опроса
+ * {@link DirectoryWatcher#POLL_INTERVAL_MS}. Все готовые к этому моменту файлы обрабатываются одним пакетом.
+ * Файлы, имена которых начинаются с точки или заканчиваются на {@code .tmp} или {@code .part}, пропускаются (они еще записываются).
+ * <p>Райтеры остаются открытыми между пакетами и закрываются только при остановке программы (например, Ctrl+C).
+ * Имеет методы:
+ * <p>{@link DirectoryWatcher#watch()}
+ * <p>{@link DirectoryWatcher#scan(Path)}
+ * <p>{@link DirectoryWatcher#collectReady()}
+ * <p>{@link DirectoryWatcher#processBatch(List)}
+ * <p>{@link DirectoryWatcher#moveToDone(List)}
+ * <p>{@link DirectoryWatcher#shutdown(boolean)}
+ */
+@RequiredArgsConstructor
+public class DirectoryWatcher {
+    /**
+     * Интервал опроса директории в миллисекундах
+     */
+    private static final long POLL_INTERVAL_MS = 500;
+
+    /**
+     * Экземпляр класса {@link Parameters}
+     */
+    private final Parameters parameters;
+    /**
+     * Экземпляр класса {@link FileHandler}
+     */
+    private final FileHandler fileHandler;
+    /**
+     * Экземпляр класса {@link StatCalculator} для статистики текущего пакета (тот же, что использует {@link FileHandler})
+     */
+    private final StatCalculator batchStat;
+    /**
+     * Выходные файлы
+     */
+    private final File intFile;
+    private final File floatFile;
+    private final File strFile;
+
+    /**
+     * Накопленная статистика по всем пакетам
+     */
+    private final StatCalculator totalStat = new StatCalculator();
+    /**
+     * Файлы, замеченные в директории, но еще не обработанные, в формате ключ(файл)-значение(размер и время изменения при прошлом опросе)
+     */
+    private final Map<Path, List<Long>> pending = new HashMap<>();
+    /**
+     * Обработанные файлы (если они не перемещаются) в формате ключ(файл)-значение(время изменения при обработке).
+     * Файл удаляется из списка, когда он исчезает из директории, поэтому список не растет бесконечно
+     */
+    private final Map<Path, Long> processed = new HashMap<>();
+    /**
+     * Сигнал о завершении работы: основной поток уменьшает счетчик после закрытия райтеров
+     */
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Флаг работы. Сбрасывается в обработчике завершения JVM
+     */
+    private volatile boolean running = true;
+    /**
+     * Номер последнего обработанного пакета
+     */
+    private int batchNumber = 0;
+
+    /**
+     * Основной метод класса. Создает директории (если их нет), регистрирует обработчик завершения JVM,
+     * обрабатывает уже лежащие в директории файлы и ждет новые, пока программу не остановят.
+     * <p>Если наблюдение не удалось начать (например, путь указывает на файл или директорию не удалось создать),
+     * то выводится ошибка и итоговая статистика не выводится
+     * @return {@code true}, если наблюдение было остановлено штатно, {@code false}, если его не удалось начать или оно прервалось из-за ошибки
+     * @see Style#setErrBold()
+     * @see Style#setErr(String)
+     * @see Style#setOut(String, boolean)
+     */
+    public boolean watch() {
+        Path watchDir = Paths.get(parameters.watchDir()).toAbsolutePath();
+
+        WatchService watchService;
+        try {
+            Files.createDirectories(watchDir);
+            if (parameters.doneDir() != null) {
+                Files.createDirectories(Paths.get(parameters.doneDir()));
+            }
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (FileAlreadyExistsException e) {
+            System.err.println(Style.setErrBold() + Style.setErr(
+                    "Не удалось начать наблюдение за директорией " + watchDir + ": " + e.getFile() + " не является директорией\n"));
+            return false;
+        } catch (IOException e) {
+            System.err.println(Style.setErrBold() + Style.setErr(
+                    "Не удалось начать наблюдение за директорией " + watchDir + ": " + e.getMessage() + "\n"));
+            return false;
+        }
+
+        boolean succeeded = false;
+        try (watchService) {
+            try {
+                watchDir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            } catch (IOException e) {
+                System.err.println(Style.setErrBold() + Style.setErr(
+                        "Не удалось начать наблюдение за директорией " + watchDir + ": " + e.getMessage() + "\n"));
+                return false;
+            }
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                running = false;
+                try {
+                    stopped.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+
+            // Наблюдение началось: с этого момента при любом завершении выводится итоговая статистика
+            try {
+                System.out.println(Style.setOut("Наблюдение за директорией: " + watchDir
+                        + ". Для остановки нажмите Ctrl+C", false));
+
+                // Файлы, которые уже лежали в директории до запуска
+                scan(watchDir);
+
+                while (running) {
+                    WatchKey key = watchService.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+                    if (key != null) {
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                                // События потеряны, поэтому директория просматривается заново
+                                scan(watchDir);
+                            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                                // Удаленный файл больше не нужно помнить как обработанный
+                                processed.remove(watchDir.resolve((Path) event.context()));
+                            } else {
+                                pending.putIfAbsent(watchDir.resolve((Path) event.context()), List.of());
+                            }
+                        }
+                        key.reset();
+                    }
+
+                    List<Path> ready = collectReady();
+                    if (!ready.isEmpty()) {
+                        processBatch(ready);
+                    }
+                }
+                succeeded = true;
+            } catch (IOException e) {
+                System.err.println(Style.setErrBold() + Style.setErr(
+                        "Наблюдение за директорией " + watchDir + " прервано: " + e.getMessage() + "\n"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                succeeded = true;
+            } finally {
+                shutdown(succeeded);
+            }
+        } catch (IOException e) {
+            System.err.println(Style.setErrBold() + Style.setErr("Ошибка при закрытии наблюдения за директорией: " + e.getMessage() + "\n"));
+        }
+
+        return succeeded;
+    }
+
+    /**
+     * Вспомогательный метод, добавляющий все файлы директории в список ожидающих обработки.
+     * Обработанные файлы, которых больше нет, забываются (события их удаления могли быть потеряны)
+     * @param watchDir директория, за которой ведется наблюдение
+     * @throws IOException если не удается прочитать директорию
+     */
+    private void scan(Path watchDir) throws IOException {
+        processed.keySet().removeIf(path -> !Files.exists(path));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(watchDir)) {
+            for (Path path : stream) {
+                pending.putIfAbsent(path, List.of());
+            }
+        }
+    }
+
+    /**
+     * Метод отбора файлов, готовых к обработке. Файл готов, если его размер и время изменения не изменились с прошлого опроса.
+     * Исчезнувшие, временные и выходные файлы, а также уже обработанные и не измененные файлы убираются из списка ожидания
+     * @return список готовых файлов, отсортированный по имени
+     */
+    private List<Path> collectReady() {
+        List<Path> ready = new ArrayList<>();
+        Set<Path> outputFiles = Set.of(intFile.toPath().toAbsolutePath(), floatFile.toPath().toAbsolutePath(), strFile.toPath().toAbsolutePath());
+
+        for (Path path : new ArrayList<>(pending.keySet())) {
+            String name = path.getFileName().toString();
+
+            if (!Files.isRegularFile(path) || outputFiles.contains(path)
+                    || name.startsWith(".") || name.endsWith(".tmp") || name.endsWith(".part")) {
+                pending.remove(path);
+                continue;
+            }
+
+            try {
+                long modified = Files.getLastModifiedTime(path).toMillis();
+                List<Long> state = List.of(Files.size(path), modified);
+
+                if (processed.containsKey(path) && processed.get(path) == modified) {
+                    pending.remove(path);
+                } else if (state.equals(pending.get(path))) {
+                    ready.add(path);
+                    pending.remove(path);
+                } else {
+                    pending.put(path, state);
+                }
+            } catch (IOException e) {
+                // Файл мог быть удален между проверками, он будет замечен снова при следующем событии
+                pending.remove(path);
+            }
+        }
+
+        ready.sort(null);
+        return ready;
+    }
+
+    /**
+     * Метод обработки пакета файлов. Читает и записывает данные с помощью {@link FileHandler#readAndWriteBatch(List, File, File, File)},
+     * выводит статистику пакета и накопленную статистику, после чего перемещает обработанные файлы с помощью {@link DirectoryWatcher#moveToDone(List)}.
+     * Обработчик строк в режиме службы создается без остановки на пустых строках ({@link Engine#stopOnEmptyRound}),
+     * поэтому каждый файл пакета прочитан до конца
+     * @param batch список готовых файлов
+     */
+    private void processBatch(List<Path> batch) {
+        batchNumber++;
+
+        List<String> inputFiles = new ArrayList<>();
+        String files = "";
+        for (Path path : batch) {
+            inputFiles.add(path.toString());
+            files += "        " + path + "\n";
+        }
+
+        fileHandler.readAndWriteBatch(inputFiles, intFile, floatFile, strFile);
+
+        System.out.println(Style.setOut("\nПакет #" + batchNumber + " обработан:\n", true)
+                + "    Входные файлы:\n" + files);
+
+        boolean printStat = parameters.shortStat() || parameters.fullStat();
+        if (printStat) {
+            System.out.println(Style.setOut("Статистика пакета #" + batchNumber + ":", false));
+            batchStat.printStat(parameters);
+        }
+
+        totalStat.merge(batchStat);
+        batchStat.reset();
+
+        if (printStat) {
+            System.out.println(Style.setOut("\nНакопленная статистика:", false));
+            totalStat.printStat(parameters);
+        }
+
+        moveToDone(batch);
+    }
+
+    /**
+     * Метод перемещения обработанных файлов в директорию {@link Parameters#doneDir()}.
+     * Если директория не задана или файл не удалось переместить, то файл запоминается как обработанный,
+     * и повторно обрабатывается только после изменения
+     * @param batch список обработанных файлов
+     * @see Style#setErrBold()
+     * @see Style#setErr(String)
+     */
+    private void moveToDone(List<Path> batch) {
+        for (Path path : batch) {
+            try {
+                if (parameters.doneDir() != null) {
+                    Files.move(path, Paths.get(parameters.doneDir()).resolve(path.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    processed.put(path, Files.getLastModifiedTime(path).toMillis());
+                }
+            } catch (IOException e) {
+                System.err.println(Style.setErrBold() + Style.setErr(
+                        "Не удалось переместить обработанный файл " + path + ": " + e.getMessage() + "\n"));
+                processed.put(path, path.toFile().lastModified());
+            }
+        }
+    }
+
+    /**
+     * Метод завершения работы: закрывает все райтеры (данные сбрасываются в выходные файлы), выводит накопленную статистику
+     * и сообщает обработчику завершения JVM, что работу можно завершать (даже если при выводе произошла ошибка)
+     * @param succeeded было ли наблюдение остановлено штатно. Если нет, то сообщение об успешном завершении не выводится
+     * @see Style#setOut(String, boolean)
+     */
+    private void shutdown(boolean succeeded) {
+        try {
+            fileHandler.closeWriters();
+
+            System.out.println(Style.setOut("\nНаблюдение остановлено. Обработано пакетов: " + batchNumber, true));
+            if (parameters.shortStat() || parameters.fullStat()) {
+                System.out.println(Style.setOut("\nИтоговая статистика:", false));
+                totalStat.printStat(parameters);
+            }
+            if (succeeded) {
+                System.out.println(Style.setOut("\nПрограмма успешно завершила работу", true));
+            }
+        } finally {
+            stopped.countDown();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.example;
+
+import lombok.Builder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Встраиваемый обработчик: классифицирует строки на целые числа, вещественные числа и строки, применяет фильтр {@link LineFilter},
+ * передает строки в приемники {@link LaneSinks} и ведет статистику. Не работает с файлами и консолью и не завершает программу,
+ * поэтому его можно вызывать из другого приложения для данных, которые уже находятся в памяти:
+ * <pre>{@code
+ * Engine engine = Engine.builder().trackTop(true).build();
+ * Statistics stat = engine.run(LineSource.of(ByteBuffer.wrap(data)), LaneSinks.discard());
+ * }</pre>
+ * Утилита командной строки использует этот же класс: {@link FileHandler} передает ему ридеры входных файлов и приемники {@link WriterHandler#sinks(java.io.File, java.io.File, java.io.File)}.
+ * <p>Использована аннотация {@link Builder} библиотеки <a href="https://projectlombok.org/">Lombok</a> для реализации паттерна строителя.
+ * Экземпляр не изменяется при обработке, поэтому его можно использовать повторно (в том числе из разных потоков с разными источниками и приемниками).
+ * <p>Имеет методы:
+ * <p>{@link Engine#run(LineSource, LaneSinks)} и {@link Engine#run(List, LaneSinks)}
+ * <p>{@link Engine#classify(byte[], int, int, LaneSinks, StatCalculator)}
+ * <p>Чтобы получать классифицированные строки в виде записей {@link ClassifiedRecord} (с учетом скорости подписчиков), используется {@link RecordPublisher}.
+ */
+@Builder
+public class Engine {
+    /**
+     * Фильтр строк. По умолчанию пропускает все строки
+     */
+    @Builder.Default
+    private final LineFilter filter = LineFilter.NONE;
+    /**
+     * Флаг поиска самых частых значений ({@link Statistics#topInt()} и {@link Statistics#topStr()})
+     */
+    private final boolean trackTop;
+    /**
+     * Флаг правила остановки чтения утилиты командной строки: чтение прекращается, когда ни в одном источнике на очередном шаге
+     * не нашлось непустой строки (например, пустая строка в единственном входном файле завершает его чтение).
+     * По умолчанию источники читаются до конца, пустые строки пропускаются
+     */
+    private final boolean stopOnEmptyRound;
+    /**
+     * Обработчик ошибки чтения строки. Если он не выбросил исключение, то строка считается пустой и обработка продолжается.
+     * По умолчанию выбрасывает {@link UncheckedIOException}
+     */
+    @Builder.Default
+    private final Consumer<IOException> readErrorHandler = e -> {
+        throw new UncheckedIOException(e);
+    };
+
+    /**
+     * Обрабатывает все строки одного источника
+     * @param source источник строк (не закрывается)
+     * @param sinks приемники строк
+     * @return статистика по обработанным строкам
+     */
+    public Statistics run(LineSource source, LaneSinks sinks) {
+        return run(List.of(source), sinks);
+    }
+
+    /**
+     * Обрабатывает строки нескольких источников. Источники читаются по очереди по одной строке, как входные файлы утилиты
+     * @param sources источники строк (не закрываются)
+     * @param sinks приемники строк
+     * @return статистика по обработанным строкам
+     */
+    public Statistics run(List<? extends LineSource> sources, LaneSinks sinks) {
+        StatCalculator statCalculator = new StatCalculator(trackTop);
+        run(sources, sinks, statCalculator);
+        return statCalculator.snapshot();
+    }
+
+    /**
+     * Обрабатывает строки нескольких источников и добавляет статистику в переданный экземпляр {@link StatCalculator}.
+     * Источники читаются по очереди по одной строке, пока они не закончатся (или до шага без непустых строк, см. {@link Engine#stopOnEmptyRound})
+     * @param sources источники строк (не закрываются)
+     * @param sinks приемники строк
+     * @param statCalculator статистика или {@code null}, если статистику ведут сами приемники (как подписчики {@link RecordPublisher})
+     */
+    void run(List<? extends LineSource> sources, LaneSinks sinks, StatCalculator statCalculator) {
+        boolean sourcesNotEmpty = true;
+
+        while (sourcesNotEmpty) {
+            sourcesNotEmpty = false;
+
+            for (LineSource source : sources) {
+                // Если строку не удалось прочитать, то она считается пустой
+                boolean lineRead = false;
+
+                try {
+                    lineRead = source.readLine();
+                } catch (IOException e) {
+                    readErrorHandler.accept(e);
+                }
+
+                if (lineRead && source.length() > 0) {
+                    sourcesNotEmpty = true;
+                    classify(source.bytes(), source.offset(), source.length(), sinks, statCalculator);
+                } else if (lineRead && !stopOnEmptyRound) {
+                    sourcesNotEmpty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Метод классификации строки, прочитанной в виде байтов UTF-8.
+     * <p>Если строка точно не является числом ({@link Utf8#mayBeNumber(byte[], int, int)}) и записана в корректной UTF-8,
+     * то длина строки считается по байтам с помощью {@link Utf8#utf16Length(byte[], int, int)},
+     * строка проверяется фильтром по байтам ({@link LineFilter#acceptString(byte[], int, int)}),
+     * обновляется статистика строк с помощью метода {@link StatCalculator#updateStringStat(byte[], int, int, long)},
+     * и байты передаются в приемник строк без копирования.
+     * <p>Иначе строка декодируется и классифицируется методом {@link Engine#classify(String, LaneSinks, StatCalculator)}
+     * (некорректные байты при этом заменяются символом U+FFFD)
+     * @param bytes буфер со строкой
+     * @param offset индекс первого байта строки
+     * @param length длина строки в байтах
+     * @param sinks приемники строк
+     * @param statCalculator статистика (или {@code null})
+     * @return тип строки или {@code null}, если строку отклонил фильтр
+     */
+    Lane classify(byte[] bytes, int offset, int length, LaneSinks sinks, StatCalculator statCalculator) {
+        if (!Utf8.mayBeNumber(bytes, offset, length)) {
+            int strLength = Utf8.utf16Length(bytes, offset, length);
+
+            if (strLength >= 0) {
+                boolean accepted = filter.acceptString(bytes, offset, length);
+                if (statCalculator != null && (accepted || filter.isStatAll())) {
+                    statCalculator.updateStringStat(bytes, offset, length, strLength);
+                }
+                if (!accepted) {
+                    if (filter.isStatAll()) {
+                        sinks.strings().rejectLine(bytes, offset, length);
+                    }
+                    return null;
+                }
+                sinks.strings().writeLine(bytes, offset, length);
+                return Lane.STRINGS;
+            }
+        }
+
+        return classify(new String(bytes, offset, length, StandardCharsets.UTF_8), sinks, statCalculator);
+    }
+
+    /**
+     * Метод классификации строки.
+     * <p>Вначале пытается преобразовать строку в {@code long}.
+     * Если это получилось, тогда обновляет статистику целых чисел с помощью метода {@link StatCalculator#updateIntStat(long)}
+     * и передает число в приемник целых чисел ({@link LineSink#writeLong(long)}).
+     * <p>Если не получилось преобразовать в {@code long}, тогда происходит попытка преобразования в {@code double}.
+     * Если это получилось и число конечное (не {@code NaN} и не бесконечность), тогда обновляет статистику вещественных чисел с помощью метода {@link StatCalculator#updateFloatStat(double)}
+     * и передает число в приемник вещественных чисел ({@link LineSink#writeDouble(double)}).
+     * <p>Если не получилось преобразовать ни в {@code long}, ни в конечный {@code double},
+     * тогда обновляет статистику строк с помощью метода {@link StatCalculator#updateStringStat(String)}
+     * и передает строку в приемник строк.
+     * <p>Перед передачей в приемник значение проверяется фильтром {@link LineFilter}: числа - по разобранному значению.
+     * Отклоненное значение не записывается в приемник, а с опцией --stat-all учитывается в статистике
+     * и передается приемнику методом {@code reject...} (например, {@link LineSink#rejectLong(long)}).
+     * @param line строка
+     * @param sinks приемники строк
+     * @param statCalculator статистика (или {@code null})
+     * @return тип строки или {@code null}, если строку отклонил фильтр
+     */
+    private Lane classify(String line, LaneSinks sinks, StatCalculator statCalculator) {
+        // Попытка преобразования в long
+        try {
+            // Если не получилось преобразовать, то переходит в следующий блок try-catch
+            long n = Long.parseLong(line);
+            // Если получилось преобразовать, то обновляется статистика, и число передается в приемник
+            boolean accepted = filter.acceptInt(n);
+            if (statCalculator != null && (accepted || filter.isStatAll())) {
+                statCalculator.updateIntStat(n);
+            }
+            if (!accepted) {
+                if (filter.isStatAll()) {
+                    sinks.integers().rejectLong(n);
+                }
+                return null;
+            }
+            sinks.integers().writeLong(n);
+            return Lane.INTEGERS;
+
+        } catch (NumberFormatException e) {
+            // Попытка преобразования в double
+            try {
+                double f = Double.parseDouble(line);
+                // NaN и бесконечности (в том числе переполнение, например 1e400) вещественными числами не считаются:
+                // тип строки выбирается до обновления статистики и проверки фильтром
+                if (Double.isFinite(f)) {
+                    // Если получилось преобразовать, то обновляется статистика, и число передается в приемник
+                    boolean accepted = filter.acceptFloat(f);
+                    if (statCalculator != null && (accepted || filter.isStatAll())) {
+                        statCalculator.updateFloatStat(f);
+                    }
+                    if (!accepted) {
+                        if (filter.isStatAll()) {
+                            sinks.floats().rejectDouble(f);
+                        }
+                        return null;
+                    }
+                    sinks.floats().writeDouble(f);
+                    return Lane.FLOATS;
+                }
+            } catch (NumberFormatException e2) {
+                // Если не получилось преобразовать ни в long, ни в double, то строка передается в приемник строк
+            }
+
+            boolean accepted = filter.acceptString(line);
+            if (statCalculator != null && (accepted || filter.isStatAll())) {
+                statCalculator.updateStringStat(line);
+            }
+            if (!accepted) {
+                if (filter.isStatAll()) {
+                    sinks.strings().rejectLine(line);
+                }
+                return null;
+            }
+            sinks.strings().writeLine(line);
+            return Lane.STRINGS;
+        }
+    }
+}
@@ -2,28 +2,34 @@ package org.example;
 
 import lombok.RequiredArgsConstructor;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Flow;
 
 /**
- * Класс для работы с файлами (чтение и вызов метода записи {@link WriterHandler#writeLine(File, Object)}).
+ * Класс для работы с файлами: открывает входные файлы и передает их строки в {@link Engine} вместе с приемниками,
+ * которые записывают строки в выходные файлы через {@link WriterHandler}.
  * Использована аннотация {@link RequiredArgsConstructor} библиотеки <a href="https://projectlombok.org/">Lombok</a> для создания конструктора.
  * Имеет поля:
  * <p>{@link FileHandler#writerHandler}
  * <p>{@link FileHandler#statCalculator}
+ * <p>{@link FileHandler#engine}
+ * <p>{@link FileHandler#stream}
  * <p>Имеет методы:
  * <p>{@link FileHandler#readAndWrite(List, File, File, File)}
- * <p>{@link FileHandler#getReaders(List)}
- * <p>{@link FileHandler#readLine(List, File, File, File)}
- * <p>{@link FileHandler#writeLine(String, File, File, File)}
+ * <p>{@link FileHandler#readAndWriteBatch(List, File, File, File)}
+ * <p>{@link FileHandler#closeWriters()}
+ * <p>{@link FileHandler#publish(List, List, LaneSinks)}
+ * <p>{@link FileHandler#getReaders(List, List)}
+ * <p>{@link FileHandler#printReadError(IOException)}
  * <p>{@link FileHandler#closeReaders(List)}
+ * <p>Входные файлы читаются в виде байтов с помощью {@link LineReader}. Строки, которые точно не являются числами,
+ * копируются в файл строк без декодирования в {@link String} и обратного кодирования в UTF-8.
+ * Строки, которые отклонил фильтр {@link LineFilter}, не передаются в {@link WriterHandler}.
  */
 @RequiredArgsConstructor
 public class FileHandler {
@@ -35,39 +41,110 @@ public class FileHandler {
      * Экземпляр класса {@link StatCalculator}
      */
     private final StatCalculator statCalculator;
+    /**
+     * Экземпляр класса {@link Engine}, который классифицирует строки
+     */
+    private final Engine engine;
+    /**
+     * Флаг опции --stream: строки передаются в выходные файлы и статистику через {@link RecordPublisher}
+     */
+    private final boolean stream;
 
     /**
      * Основной метод класса. Читает входные файлы и записывает данные в выходные.
-     * Для чтения и записи использует методы {@link FileHandler#getReaders(List)} и {@link FileHandler#readLine(List, File, File, File)}
+     * Для чтения и записи использует методы {@link FileHandler#getReaders(List, List)} и {@link Engine#run(List, LaneSinks)}
+     * (или {@link FileHandler#publish(List, List, LaneSinks)} с опцией --stream)
      * @param inputFiles список входных файлов в формате {@code String}
      * @param intFile выходной файл для целых чисел
      * @param floatFile выходной файл для вещественных чисел
      * @param strFile выходной файл для строк
      */
     public void readAndWrite(List<String> inputFiles, File intFile, File floatFile, File strFile) {
-        // Лист ридеров для входных файлов
-        List<BufferedReader> readers = getReaders(inputFiles);
-        // Чтение и запись строки
-        readLine(readers, intFile, floatFile, strFile);
-        // Закрытие всех ридеров
-        closeReaders(readers);
+        // Чтение и запись всех входных файлов
+        read(inputFiles, intFile, floatFile, strFile);
         // Закрытие всех райтеров
         writerHandler.closeAllWriters();
     }
 
+    /**
+     * Метод для обработки одного пакета входных файлов в режиме наблюдения за директорией.
+     * В отличие от {@link FileHandler#readAndWrite(List, File, File, File)} не закрывает райтеры, а только сбрасывает их буферы,
+     * чтобы следующие пакеты дописывались в те же выходные файлы
+     * @param inputFiles список входных файлов пакета в формате {@code String}
+     * @param intFile выходной файл для целых чисел
+     * @param floatFile выходной файл для вещественных чисел
+     * @param strFile выходной файл для строк
+     */
+    public void readAndWriteBatch(List<String> inputFiles, File intFile, File floatFile, File strFile) {
+        read(inputFiles, intFile, floatFile, strFile);
+        // Сброс буферов, чтобы данные пакета сразу оказались в выходных файлах
+        writerHandler.flushAllWriters();
+    }
+
+    /**
+     * Метод закрытия всех райтеров. Используется при завершении режима наблюдения за директорией
+     */
+    public void closeWriters() {
+        writerHandler.closeAllWriters();
+    }
+
+    /**
+     * Вспомогательный метод: создает ридеры, читает и записывает строки, закрывает ридеры
+     * @param inputFiles список входных файлов в формате {@code String}
+     * @param intFile выходной файл для целых чисел
+     * @param floatFile выходной файл для вещественных чисел
+     * @param strFile выходной файл для строк
+     */
+    private void read(List<String> inputFiles, File intFile, File floatFile, File strFile) {
+        // Лист ридеров для входных файлов и их имена
+        List<String> names = new ArrayList<>();
+        List<LineReader> readers = getReaders(inputFiles, names);
+        // Чтение и запись строк
+        LaneSinks sinks = writerHandler.sinks(intFile, floatFile, strFile);
+        if (stream) {
+            publish(names, readers, sinks);
+        } else {
+            engine.run(readers, sinks, statCalculator);
+        }
+        // Закрытие всех ридеров
+        closeReaders(readers);
+    }
+
+    /**
+     * Метод чтения и записи через издатель {@link RecordPublisher} (опция --stream): выходные файлы и статистика подключаются
+     * как подписчики {@link SinkSubscriber} и {@link StatSubscriber}. Подписчики вызываются в потоке чтения ({@code Runnable::run}),
+     * поэтому записи не передаются между потоками, а выходные файлы и статистика совпадают с обычным запуском
+     * @param names имена входных файлов
+     * @param readers ридеры входных файлов
+     * @param sinks приемники, которые записывают строки в выходные файлы
+     */
+    private void publish(List<String> names, List<LineReader> readers, LaneSinks sinks) {
+        RecordPublisher publisher = new RecordPublisher(engine, Runnable::run, Flow.defaultBufferSize());
+        SinkSubscriber files = new SinkSubscriber(sinks);
+        StatSubscriber stat = new StatSubscriber(statCalculator);
+        publisher.subscribe(files);
+        publisher.subscribe(stat);
+
+        publisher.publish(names, readers);
+        files.done().join();
+        stat.result().join();
+    }
+
     /**
      * Метод создания ридеров для входных файлов. Если ридер не удается создать, то выводит ошибку об этом и продолжает работу с другими файлами
      * @param inputFiles список входных файлов в формате {@code String}
-     * @return список ридеров класса {@link  BufferedReader}
+     * @param names список, в который добавляются имена файлов, для которых удалось создать ридеры (в том же порядке)
+     * @return список ридеров класса {@link LineReader}
      * @see Style#setErrBold()
      * @see Style#setErr(String)
      */
-    private List<BufferedReader> getReaders(List<String> inputFiles) {
-        List<BufferedReader> readers = new ArrayList<>();
+    private List<LineReader> getReaders(List<String> inputFiles, List<String> names) {
+        List<LineReader> readers = new ArrayList<>();
         for (String inputFile : inputFiles) {
             try {
                 // Попытка создать ридер для входного файла
-                readers.add(new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8)));
+                readers.add(new LineReader(new FileInputStream(inputFile)));
+                names.add(inputFile);
             } catch (FileNotFoundException e) {
                 // Если входной файл не найден, то выводится ошибка об этом и программа продолжает работу
                 System.err.println(
@@ -80,94 +157,26 @@ public class FileHandler {
     }
 
     /**
-     * Метод для чтения строк входных файлов и вызова метода записи {@link FileHandler#writeLine(String, File, File, File)}.
-     * Если строку не удалось прочитать, программа продолжает работу с другими строками
-     * @param readers список ридеров класса {@link  BufferedReader}
-     * @param intFile выходной файл для целых чисел
-     * @param floatFile выходной файл для вещественных чисел
-     * @param strFile выходной файл для строк
+     * Метод вывода ошибки чтения строки. Используется как обработчик ошибок чтения {@link Engine} в утилите командной строки:
+     * строка, которую не удалось прочитать, считается пустой, и программа продолжает работу с другими строками
+     * @param e исключение при чтении строки
      * @see Style#setErrBold()
      * @see Style#setErr(String)
      */
-    private void readLine(List<BufferedReader> readers, File intFile, File floatFile, File strFile) {
-        boolean filesNotEmpty = true;
-
-        while (filesNotEmpty) {
-            filesNotEmpty = false;
-
-            for (BufferedReader reader : readers) {
-                String line = "";
-
-                try {
-                    line = reader.readLine();
-                } catch (IOException e) {
-                    System.out.println(
-                            Style.setErrBold() +
-                            Style.setErr("Не удалось прочитать строку. " + e.getMessage() + "\n"));
-                }
-
-                if (line != null && !line.isEmpty()) {
-                    filesNotEmpty = true;
-                    // Вызов метода записи
-                    writeLine(line, intFile, floatFile, strFile);
-                }
-            }
-        }
-    }
-
-    /**
-     * Метод записи данных в выходные файлы.
-     * <p>Вначале пытается преобразовать строку в {@code long}.
-     * Если это получилось, тогда обновляет статистику целых чисел с помощью метода {@link StatCalculator#updateIntStat(long)}
-     * и вызывает метод записи {@link WriterHandler#writeLine(File, Object)} для записи данных в файл целых чисел.
-     * <p>Если не получилось преобразовать в {@code long}, тогда происходит попытка преобразования в {@code double}.
-     * Если это получилось, тогда обновляет статистику вещественных чисел с помощью метода {@link StatCalculator#updateFloatStat(double)}
-     * и вызывает метод записи {@link WriterHandler#writeLine(File, Object)} для записи данных в файл вещественных чисел.
-     * <p>Если не получилось преобразовать ни в {@code long}, ни в {@code double},
-     * тогда обновляет статистику строк с помощью метода {@link StatCalculator#updateStringStat(String)}
-     * и вызывает метод записи {@link WriterHandler#writeLine(File, Object)} для записи данных в файл строк.
-     * @param line строка во входном файле
-     * @param intFile файл целых чисел
-     * @param floatFile файл вещественных чисел
-     * @param strFile файл строк
-     */
-    private void writeLine(String line, File intFile, File floatFile, File strFile) {
-        // Попытка преобразования в long
-        try {
-            // Если не получилось преобразовать, то переходит в следующий блок try-catch
-            long n = Long.parseLong(line);
-            // Если получилось преобразовать, то обновляется статистика, и данные записываются в выходной файл
-            statCalculator.updateIntStat(n);
-            // Вызов метода записи в классе WriterHandler
-            writerHandler.writeLine(intFile, n);
-
-        } catch (NumberFormatException e) {
-            // Попытка преобразования в double
-            try {
-                double f = Double.parseDouble(line);
-                // Если получилось преобразовать, то обновляется статистика, и данные записываются в выходной файл
-                statCalculator.updateFloatStat(f);
-                // Вызов метода записи в классе WriterHandler
-                writerHandler.writeLine(floatFile, f);
-
-            } catch (NumberFormatException e2) {
-                // Если не получилось преобразовать ни в long, ни в double, то строка записывается в файл для строк
-                // Обновление статистики
-                statCalculator.updateStringStat(line);
-                // Вызов метода записи в классе WriterHandler
-                writerHandler.writeLine(strFile, line);
-            }
-        }
+    static void printReadError(IOException e) {
+        System.out.println(
+                Style.setErrBold() +
+                Style.setErr("Не удалось прочитать строку. " + e.getMessage() + "\n"));
     }
 
     /**
      * Метод закрытия всех ридеров
-     * @param readers список ридеров класса {@link BufferedReader}
+     * @param readers список ридеров класса {@link LineReader}
      * @see Style#setErrBold()
      * @see Style#setErr(String)
      */
-    private void closeReaders(List<BufferedReader> readers) {
-        for (BufferedReader reader : readers) {
+    private void closeReaders(List<LineReader> readers) {
+        for (LineReader reader : readers) {
             try {
                 if (reader != null) {
                     reader.close();
@@ -0,0 +1,266 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Класс для поиска самых частых значений с фиксированным объемом памяти (алгоритм Space-Saving, Metwally и др.).
+ * <p>Хранится не более {@link HeavyHitters#capacity} счетчиков. Если встречается новое значение, а все счетчики заняты,
+ * то оно заменяет значение с наименьшим счетчиком {@code min}: счетчик становится равен {@code min + 1}, а погрешность - {@code min}.
+ * Поэтому оценка частоты никогда не меньше истинной, а истинная частота не меньше {@code оценка - погрешность}.
+ * Любое значение, которое встречается чаще, чем {@code N / capacity} раз (N - общее количество), гарантированно отслеживается.
+ * <p>Счетчики хранятся в двоичной куче по возрастанию, поэтому обновление занимает {@code O(log capacity)}.
+ * <p>Имеет методы:
+ * <p>{@link HeavyHitters#increment(Object)} и {@link HeavyHitters#insert(Object)} для учета значения
+ * <p>{@link HeavyHitters#add(Object)} для учета значения, которое можно хранить без копирования
+ * <p>{@link HeavyHitters#merge(HeavyHitters)} для объединения с другим экземпляром (например, другого шарда)
+ * <p>{@link HeavyHitters#top(int)} для получения самых частых значений
+ * <p>{@link HeavyHitters#store(Properties, String, Function)} и {@link HeavyHitters#load(Properties, String, int, Function)} для сохранения и загрузки
+ * @param <K> тип значений
+ */
+public class HeavyHitters<K> {
+    /**
+     * Оценка частоты значения
+     * @param key значение
+     * @param count оценка частоты (не меньше истинной)
+     * @param error погрешность: истинная частота не меньше {@code count - error}
+     * @param <K> тип значения
+     */
+    public record Entry<K>(K key, long count, long error) {
+    }
+
+    /**
+     * Счетчик значения. Хранит свою позицию в куче, чтобы перестановки в куче не требовали обращений к {@link HeavyHitters#index}
+     */
+    private static final class Counter<K> {
+        private K key;
+        private long count;
+        private long error;
+        private int pos;
+    }
+
+    /**
+     * Максимальное количество счетчиков
+     */
+    private final int capacity;
+    /**
+     * Счетчики по значениям
+     */
+    private final Map<K, Counter<K>> index;
+    /**
+     * Двоичная куча счетчиков по возрастанию
+     */
+    private final Counter<K>[] heap;
+    private int size = 0;
+
+    /**
+     * @param capacity максимальное количество счетчиков
+     */
+    @SuppressWarnings("unchecked")
+    public HeavyHitters(int capacity) {
+        this.capacity = capacity;
+        this.index = new HashMap<>(capacity * 2);
+        this.heap = (Counter<K>[]) new Counter<?>[capacity];
+    }
+
+    /**
+     * Увеличивает счетчик значения, если оно уже отслеживается
+     * @param key значение (может быть «зондом», см. {@link Bytes})
+     * @return {@code false}, если значение не отслеживается и его нужно добавить методом {@link HeavyHitters#insert(Object)}
+     */
+    public boolean increment(K key) {
+        Counter<K> counter = index.get(key);
+        if (counter == null) {
+            return false;
+        }
+        counter.count++;
+        siftDown(counter.pos);
+        return true;
+    }
+
+    /**
+     * Добавляет значение, которое еще не отслеживается. Если все счетчики заняты, то заменяет значение с наименьшим счетчиком
+     * @param key значение, которое будет храниться
+     */
+    public void insert(K key) {
+        if (size < capacity) {
+            add(key, 1, 0);
+        } else {
+            // Значение с наименьшим счетчиком вытесняется, его счетчик переходит к новому значению
+            Counter<K> min = heap[0];
+            index.remove(min.key);
+            min.key = key;
+            min.error = min.count;
+            min.count++;
+            index.put(key, min);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Учитывает значение
+     * @param key значение, которое можно хранить без копирования
+     */
+    public void add(K key) {
+        if (!increment(key)) {
+            insert(key);
+        }
+    }
+
+    /**
+     * Объединяет с другим экземпляром той же емкости (алгоритм объединения Space-Saving, Agarwal и др.).
+     * Если значение отслеживается только одним экземпляром, то для второго берется его наименьший счетчик
+     * (если все счетчики заняты, иначе 0) - больше значение там встретиться не могло. Затем остаются {@link HeavyHitters#capacity} наибольших счетчиков
+     * @param other другой экземпляр
+     */
+    public void merge(HeavyHitters<K> other) {
+        long thisMin = minCount();
+        long otherMin = other.minCount();
+
+        Map<K, long[]> merged = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            merged.put(heap[i].key, new long[]{heap[i].count + otherMin, heap[i].error + otherMin});
+        }
+        for (int i = 0; i < other.size; i++) {
+            Counter<K> counter = other.heap[i];
+            long[] entry = merged.get(counter.key);
+            if (entry == null) {
+                merged.put(counter.key, new long[]{counter.count + thisMin, counter.error + thisMin});
+            } else {
+                entry[0] += counter.count - otherMin;
+                entry[1] += counter.error - otherMin;
+            }
+        }
+
+        List<Map.Entry<K, long[]>> entries = new ArrayList<>(merged.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<K, long[]> e) -> e.getValue()[0]).reversed());
+
+        clear();
+        for (Map.Entry<K, long[]> e : entries.subList(0, Math.min(capacity, entries.size()))) {
+            add(e.getKey(), e.getValue()[0], e.getValue()[1]);
+        }
+    }
+
+    /**
+     * @param k количество значений
+     * @return до {@code k} значений с наибольшими оценками частоты, по убыванию
+     */
+    public List<Entry<K>> top(int k) {
+        List<Entry<K>> entries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry<>(heap[i].key, heap[i].count, heap[i].error));
+        }
+        entries.sort(Comparator.comparingLong((Entry<K> e) -> e.count()).reversed());
+        return entries.subList(0, Math.min(k, entries.size()));
+    }
+
+    /**
+     * Удаляет все счетчики
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            heap[i] = null;
+        }
+        index.clear();
+        size = 0;
+    }
+
+    /**
+     * Сохраняет счетчики в текстовом виде (ключи с заданным префиксом)
+     * @param properties свойства, в которые записываются счетчики
+     * @param prefix префикс ключей
+     * @param format преобразование значения в строку
+     */
+    public void store(Properties properties, String prefix, Function<K, String> format) {
+        properties.setProperty(prefix + ".size", String.valueOf(size));
+        for (int i = 0; i < size; i++) {
+            properties.setProperty(prefix + "." + i + ".key", format.apply(heap[i].key));
+            properties.setProperty(prefix + "." + i + ".count", String.valueOf(heap[i].count));
+            properties.setProperty(prefix + "." + i + ".error", String.valueOf(heap[i].error));
+        }
+    }
+
+    /**
+     * Загружает счетчики, сохраненные методом {@link HeavyHitters#store(Properties, String, Function)}
+     * @param properties свойства со счетчиками
+     * @param prefix префикс ключей
+     * @param capacity максимальное количество счетчиков
+     * @param parse преобразование строки в значение
+     * @return новый экземпляр
+     * @param <K> тип значений
+     */
+    public static <K> HeavyHitters<K> load(Properties properties, String prefix, int capacity, Function<String, K> parse) {
+        HeavyHitters<K> heavyHitters = new HeavyHitters<>(capacity);
+        int size = Math.min(capacity, Integer.parseInt(properties.getProperty(prefix + ".size", "0")));
+        for (int i = 0; i < size; i++) {
+            heavyHitters.add(parse.apply(properties.getProperty(prefix + "." + i + ".key")),
+                    Long.parseLong(properties.getProperty(prefix + "." + i + ".count")),
+                    Long.parseLong(properties.getProperty(prefix + "." + i + ".error")));
+        }
+        return heavyHitters;
+    }
+
+    /**
+     * @return наименьший счетчик, если все счетчики заняты, иначе 0
+     */
+    private long minCount() {
+        return size < capacity ? 0 : heap[0].count;
+    }
+
+    /**
+     * Вспомогательный метод: добавляет счетчик в кучу (куча не должна быть заполнена)
+     */
+    private void add(K key, long count, long error) {
+        Counter<K> counter = new Counter<>();
+        counter.key = key;
+        counter.count = count;
+        counter.error = error;
+        counter.pos = size;
+        heap[size] = counter;
+        index.put(key, counter);
+        siftUp(size++);
+    }
+
+    private void siftUp(int pos) {
+        while (pos > 0) {
+            int parent = (pos - 1) / 2;
+            if (heap[parent].count <= heap[pos].count) {
+                return;
+            }
+            swap(pos, parent);
+            pos = parent;
+        }
+    }
+
+    private void siftDown(int pos) {
+        while (true) {
+            int smallest = pos;
+            int left = 2 * pos + 1;
+            int right = left + 1;
+            if (left < size && heap[left].count < heap[smallest].count) {
+                smallest = left;
+            }
+            if (right < size && heap[right].count < heap[smallest].count) {
+                smallest = right;
+            }
+            if (smallest == pos) {
+                return;
+            }
+            swap(pos, smallest);
+            pos = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        Counter<K> counter = heap[a];
+        heap[a] = heap[b];
+        heap[b] = counter;
+        heap[a].pos = a;
+        heap[b].pos = b;
+    }
+}
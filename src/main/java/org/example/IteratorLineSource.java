@@ -0,0 +1,43 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Источник уже разделенных строк ({@link LineSource#of(Iterator)}). Каждая строка кодируется в UTF-8 при чтении
+ */
+class IteratorLineSource implements LineSource {
+    private final Iterator<String> lines;
+    private byte[] line = new byte[0];
+
+    /**
+     * @param lines строки (каждый элемент - одна строка)
+     */
+    IteratorLineSource(Iterator<String> lines) {
+        this.lines = lines;
+    }
+
+    @Override
+    public boolean readLine() {
+        if (!lines.hasNext()) {
+            return false;
+        }
+        line = lines.next().getBytes(StandardCharsets.UTF_8);
+        return true;
+    }
+
+    @Override
+    public byte[] bytes() {
+        return line;
+    }
+
+    @Override
+    public int offset() {
+        return 0;
+    }
+
+    @Override
+    public int length() {
+        return line.length;
+    }
+}
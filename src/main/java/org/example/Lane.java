@@ -0,0 +1,19 @@
+package org.example;
+
+/**
+ * Тип строки после классификации (в какой выходной файл или приемник {@link LineSink} она попадает)
+ */
+public enum Lane {
+    /**
+     * Целые числа ({@code long})
+     */
+    INTEGERS,
+    /**
+     * Вещественные числа ({@code double})
+     */
+    FLOATS,
+    /**
+     * Строки
+     */
+    STRINGS
+}
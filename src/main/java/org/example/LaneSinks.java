@@ -0,0 +1,28 @@
+package org.example;
+
+/**
+ * Приемники строк для каждого типа ({@link Lane})
+ * @param integers приемник целых чисел
+ * @param floats приемник вещественных чисел
+ * @param strings приемник строк
+ */
+public record LaneSinks(LineSink integers, LineSink floats, LineSink strings) {
+    /**
+     * @param lane тип строки
+     * @return приемник для этого типа
+     */
+    public LineSink get(Lane lane) {
+        return switch (lane) {
+            case INTEGERS -> integers;
+            case FLOATS -> floats;
+            case STRINGS -> strings;
+        };
+    }
+
+    /**
+     * @return приемники, которые отбрасывают строки (например, если нужна только статистика)
+     */
+    public static LaneSinks discard() {
+        return new LaneSinks(LineSink.discard(), LineSink.discard(), LineSink.discard());
+    }
+}
@@ -0,0 +1,108 @@
+package org.example;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Класс фильтра строк, заданного опциями --int-min, --int-max, --float-min, --float-max, --str-prefix, --str-regex.
+ * Фильтр собирается один раз при разборе аргументов ({@link Parameters.ParseParameters#parse(String[])}) и применяется в {@link FileHandler}
+ * сразу после определения типа строки: числа проверяются по уже разобранному значению, префикс строки - по байтам, без создания {@link String}.
+ * Отклоненные строки не передаются в {@link WriterHandler}.
+ * <p>Использована аннотация {@link Builder} библиотеки <a href="https://projectlombok.org/">Lombok</a> для реализации паттерна строителя.
+ * Незаданные границы по умолчанию пропускают все значения.
+ * <p>Имеет методы:
+ * <p>{@link LineFilter#acceptInt(long)}
+ * <p>{@link LineFilter#acceptFloat(double)}
+ * <p>{@link LineFilter#acceptString(byte[], int, int)}
+ * <p>{@link LineFilter#acceptString(String)}
+ */
+@Builder
+public class LineFilter {
+    /**
+     * Фильтр, который пропускает все строки
+     */
+    public static final LineFilter NONE = LineFilter.builder().build();
+
+    /**
+     * Границы целых чисел (включительно)
+     */
+    @Builder.Default
+    private final long intMin = Long.MIN_VALUE;
+    @Builder.Default
+    private final long intMax = Long.MAX_VALUE;
+    /**
+     * Границы вещественных чисел (включительно)
+     */
+    @Builder.Default
+    private final double floatMin = Double.NEGATIVE_INFINITY;
+    @Builder.Default
+    private final double floatMax = Double.POSITIVE_INFINITY;
+    /**
+     * Префикс строк в кодировке UTF-8 ({@code null}, если не задан)
+     */
+    private final byte[] strPrefix;
+    /**
+     * Регулярное выражение, совпадение с которым должна содержать строка ({@code null}, если не задано)
+     */
+    private final Pattern strPattern;
+    /**
+     * Флаг статистики по всем строкам. Если {@code false}, то статистика ведется только по строкам, прошедшим фильтр (записанным в выходные файлы)
+     */
+    @Getter
+    private final boolean statAll;
+
+    /**
+     * @param n целое число
+     * @return {@code true}, если число попадает в диапазон
+     */
+    public boolean acceptInt(long n) {
+        return n >= intMin && n <= intMax;
+    }
+
+    /**
+     * Проверяет вещественное число. {@link Engine} вызывает метод только для конечных чисел: {@code NaN} и бесконечности
+     * относятся к строкам и проверяются фильтром строк, поэтому границы --float-min и --float-max на них не влияют
+     * @param f вещественное число
+     * @return {@code true}, если число попадает в диапазон
+     */
+    public boolean acceptFloat(double f) {
+        return f >= floatMin && f <= floatMax;
+    }
+
+    /**
+     * Проверяет строку, записанную в виде байтов UTF-8. Префикс сравнивается по байтам,
+     * {@link String} создается только если задано регулярное выражение и префикс совпал
+     * @param bytes буфер со строкой
+     * @param offset индекс первого байта строки
+     * @param length длина строки в байтах
+     * @return {@code true}, если строка проходит фильтр
+     */
+    public boolean acceptString(byte[] bytes, int offset, int length) {
+        if (strPrefix != null) {
+            if (length < strPrefix.length) {
+                return false;
+            }
+            for (int i = 0; i < strPrefix.length; i++) {
+                if (bytes[offset + i] != strPrefix[i]) {
+                    return false;
+                }
+            }
+        }
+        return strPattern == null || strPattern.matcher(new String(bytes, offset, length, StandardCharsets.UTF_8)).find();
+    }
+
+    /**
+     * @param str строка
+     * @return {@code true}, если строка проходит фильтр
+     */
+    public boolean acceptString(String str) {
+        if (strPrefix != null) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            return acceptString(bytes, 0, bytes.length);
+        }
+        return strPattern == null || strPattern.matcher(str).find();
+    }
+}
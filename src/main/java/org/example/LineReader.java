@@ -0,0 +1,185 @@
+package org.example;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Класс для построчного чтения файла в виде байтов, без декодирования в {@link String}.
+ * Строка остается в буфере ридера и доступна через {@link LineReader#bytes()}, {@link LineReader#offset()} и {@link LineReader#length()}
+ * до следующего вызова {@link LineReader#readLine()}. Так строки можно копировать в выходной файл без перекодирования.
+ * <p>Строки разделяются так же, как в {@link java.io.BufferedReader#readLine()}: символами {@code \n}, {@code \r} или {@code \r\n}.
+ * <p>Может читать не весь файл, а только строки, которые начинаются в заданном диапазоне байтов (используется {@link ShardHandler}).
+ * <p>Является источником строк {@link LineSource} для {@link Engine}
+ */
+public class LineReader implements LineSource {
+    /**
+     * Начальный размер буфера. Если строка не помещается в буфер, то он увеличивается
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    /**
+     * Конец диапазона: строки, которые начинаются на этой позиции или позже, не читаются
+     */
+    private final long end;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    /**
+     * Позиция в файле байта {@code buffer[0]}
+     */
+    private long bufferStart = 0;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    /**
+     * Флаг: предыдущая строка закончилась символом {@code \r}, поэтому следующий символ {@code \n} нужно пропустить
+     */
+    private boolean skipLf = false;
+
+    private int lineOffset = 0;
+    private int lineLength = 0;
+
+    /**
+     * Ридер для всего потока
+     * @param in входной поток
+     */
+    public LineReader(InputStream in) {
+        this.in = in;
+        this.end = Long.MAX_VALUE;
+    }
+
+    /**
+     * Ридер для строк файла, которые начинаются в диапазоне {@code [start, end)}.
+     * Если диапазон начинается не с начала файла, то строка, которая начинается раньше, пропускается
+     * @param in поток входного файла
+     * @param start начало диапазона
+     * @param end конец диапазона
+     * @throws IOException если не удается прочитать файл
+     */
+    public LineReader(FileInputStream in, long start, long end) throws IOException {
+        this.in = in;
+        this.end = end;
+
+        if (start > 0) {
+            in.getChannel().position(start - 1);
+            bufferStart = start - 1;
+            // Пропуск строки, в которую попадает байт перед диапазоном (или ее конца, если это сам символ перевода строки)
+            readRawLine();
+        }
+    }
+
+    /**
+     * Читает следующую строку
+     * @return {@code true}, если строка прочитана, {@code false}, если строки закончились
+     * @throws IOException если не удается прочитать файл
+     */
+    public boolean readLine() throws IOException {
+        if (skipLf) {
+            if (pos == limit) {
+                fill();
+            }
+            if (pos < limit && buffer[pos] == '\n') {
+                pos++;
+            }
+            skipLf = false;
+        }
+        if (bufferStart + pos >= end) {
+            return false;
+        }
+        return readRawLine();
+    }
+
+    /**
+     * @return буфер, в котором находится прочитанная строка
+     */
+    public byte[] bytes() {
+        return buffer;
+    }
+
+    /**
+     * @return индекс первого байта строки в буфере
+     */
+    public int offset() {
+        return lineOffset;
+    }
+
+    /**
+     * @return длина строки в байтах (без символов перевода строки)
+     */
+    public int length() {
+        return lineLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Вспомогательный метод: находит конец строки, начиная с текущей позиции, дочитывая данные в буфер при необходимости
+     * @return {@code true}, если строка прочитана, {@code false}, если данные закончились
+     * @throws IOException если не удается прочитать файл
+     */
+    private boolean readRawLine() throws IOException {
+        int scan = pos;
+
+        while (true) {
+            for (; scan < limit; scan++) {
+                byte b = buffer[scan];
+                if (b == '\n' || b == '\r') {
+                    lineOffset = pos;
+                    lineLength = scan - pos;
+                    pos = scan + 1;
+                    skipLf = b == '\r';
+                    return true;
+                }
+            }
+
+            int scanned = scan - pos;
+            if (!fill()) {
+                // Последняя строка без перевода строки
+                if (limit > pos) {
+                    lineOffset = pos;
+                    lineLength = limit - pos;
+                    pos = limit;
+                    return true;
+                }
+                return false;
+            }
+            scan = pos + scanned;
+        }
+    }
+
+    /**
+     * Вспомогательный метод: переносит непрочитанные байты в начало буфера (увеличивая буфер, если он заполнен одной строкой)
+     * и дочитывает данные из потока
+     * @return {@code true}, если удалось прочитать хотя бы один байт
+     * @throws IOException если не удается прочитать файл
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+
+        int remaining = limit - pos;
+        if (remaining == buffer.length) {
+            byte[] larger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, pos, larger, 0, remaining);
+            buffer = larger;
+        } else if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, remaining);
+        }
+        bufferStart += pos;
+        pos = 0;
+        limit = remaining;
+
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read <= 0) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Приемник строк одного типа ({@link Lane}). В него {@link Engine} записывает строки, прошедшие классификацию и фильтр.
+ * <p>Строка передается в виде байтов UTF-8 без символа перевода строки. Буфер принадлежит источнику строк
+ * и может быть изменен после возврата из метода, поэтому байты, которые нужно сохранить, приемник должен скопировать.
+ * <p>Числа передаются уже разобранными ({@link LineSink#writeLong(long)} и {@link LineSink#writeDouble(double)}).
+ * По умолчанию они записываются в том виде, в котором они записываются в выходные файлы ({@link Long#toString(long)} и {@link Double#toString(double)}).
+ * <p>Строки, которые отклонил фильтр, но которые учитываются в статистике (опция --stat-all), передаются методами {@code reject...}.
+ * По умолчанию эти методы ничего не делают: в выходные файлы такие строки не записываются.
+ * <p>Имеет методы:
+ * <p>{@link LineSink#writeLine(byte[], int, int)}
+ * <p>{@link LineSink#writeLine(String)}
+ * <p>{@link LineSink#writeLong(long)}
+ * <p>{@link LineSink#writeDouble(double)}
+ * <p>{@link LineSink#rejectLine(byte[], int, int)}, {@link LineSink#rejectLine(String)}, {@link LineSink#rejectLong(long)} и {@link LineSink#rejectDouble(double)}
+ * <p>{@link LineSink#of(OutputStream)}
+ * <p>{@link LineSink#discard()}
+ */
+@FunctionalInterface
+public interface LineSink {
+    /**
+     * Принимает строку в виде байтов UTF-8
+     * @param bytes буфер со строкой
+     * @param offset индекс первого байта строки
+     * @param length длина строки в байтах
+     */
+    void writeLine(byte[] bytes, int offset, int length);
+
+    /**
+     * Принимает строку. По умолчанию кодирует ее в UTF-8 и вызывает {@link LineSink#writeLine(byte[], int, int)}
+     * @param line строка
+     */
+    default void writeLine(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        writeLine(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Принимает целое число. По умолчанию передает его методу {@link LineSink#writeLine(String)} в виде {@link Long#toString(long)}
+     * @param value целое число
+     */
+    default void writeLong(long value) {
+        writeLine(Long.toString(value));
+    }
+
+    /**
+     * Принимает вещественное число. По умолчанию передает его методу {@link LineSink#writeLine(String)} в виде {@link Double#toString(double)}
+     * @param value вещественное число
+     */
+    default void writeDouble(double value) {
+        writeLine(Double.toString(value));
+    }
+
+    /**
+     * Принимает строку в виде байтов UTF-8, которую отклонил фильтр с опцией --stat-all. По умолчанию ничего не делает
+     * @param bytes буфер со строкой
+     * @param offset индекс первого байта строки
+     * @param length длина строки в байтах
+     */
+    default void rejectLine(byte[] bytes, int offset, int length) {
+    }
+
+    /**
+     * Принимает строку, которую отклонил фильтр с опцией --stat-all. По умолчанию кодирует ее в UTF-8 и вызывает {@link LineSink#rejectLine(byte[], int, int)}
+     * @param line строка
+     */
+    default void rejectLine(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        rejectLine(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Принимает целое число, которое отклонил фильтр с опцией --stat-all. По умолчанию передает его методу {@link LineSink#rejectLine(String)}
+     * @param value целое число
+     */
+    default void rejectLong(long value) {
+        rejectLine(Long.toString(value));
+    }
+
+    /**
+     * Принимает вещественное число, которое отклонил фильтр с опцией --stat-all. По умолчанию передает его методу {@link LineSink#rejectLine(String)}
+     * @param value вещественное число
+     */
+    default void rejectDouble(double value) {
+        rejectLine(Double.toString(value));
+    }
+
+    /**
+     * Приемник, который записывает строки в поток, разделяя их символом {@code \n}. Поток не закрывается
+     * @param out выходной поток (для небуферизованных потоков стоит использовать {@link java.io.BufferedOutputStream})
+     * @return приемник строк
+     * @throws UncheckedIOException при ошибке записи
+     */
+    static LineSink of(OutputStream out) {
+        return (bytes, offset, length) -> {
+            try {
+                out.write(bytes, offset, length);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * @return приемник, который отбрасывает строки (например, если нужна только статистика)
+     */
+    static LineSink discard() {
+        return (bytes, offset, length) -> {
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * Источник строк для {@link Engine}. Строка доступна в виде байтов UTF-8 через {@link LineSource#bytes()}, {@link LineSource#offset()}
+ * и {@link LineSource#length()} до следующего вызова {@link LineSource#readLine()}.
+ * <p>Источники для разных видов данных создаются статическими методами:
+ * <p>{@link LineSource#of(InputStream)} - поток (например, файл), читается с помощью {@link LineReader}
+ * <p>{@link LineSource#of(ByteBuffer)} - данные в памяти, строки читаются прямо из буфера
+ * <p>{@link LineSource#of(Iterator)} - уже разделенные строки
+ * <p>В потоке и буфере строки разделяются так же, как в {@link java.io.BufferedReader#readLine()}: символами {@code \n}, {@code \r} или {@code \r\n}.
+ */
+public interface LineSource extends Closeable {
+    /**
+     * Читает следующую строку
+     * @return {@code true}, если строка прочитана, {@code false}, если строки закончились
+     * @throws IOException если не удается прочитать данные
+     */
+    boolean readLine() throws IOException;
+
+    /**
+     * @return буфер с текущей строкой
+     */
+    byte[] bytes();
+
+    /**
+     * @return индекс первого байта текущей строки в буфере
+     */
+    int offset();
+
+    /**
+     * @return длина текущей строки в байтах
+     */
+    int length();
+
+    /**
+     * По умолчанию ничего не делает: источникам в памяти нечего закрывать
+     * @throws IOException если не удается закрыть источник
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * @param in входной поток (закрывается методом {@link LineSource#close()})
+     * @return источник строк потока
+     */
+    static LineSource of(InputStream in) {
+        return new LineReader(in);
+    }
+
+    /**
+     * @param buffer данные от позиции до предела буфера (позиция буфера не изменяется)
+     * @return источник строк буфера
+     */
+    static LineSource of(ByteBuffer buffer) {
+        return new ByteBufferLineSource(buffer);
+    }
+
+    /**
+     * @param lines строки (каждый элемент - одна строка)
+     * @return источник строк
+     */
+    static LineSource of(Iterator<String> lines) {
+        return new IteratorLineSource(lines);
+    }
+}
@@ -1,6 +1,6 @@
 package org.example;
 
-import org.fusesource.jansi.AnsiConsole;
+import org.apache.commons.cli.ParseException;
 
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
@@ -18,6 +18,12 @@ import java.nio.charset.StandardCharsets;
  * <p>
  * {@link FileHandler} - класс для работы с файлами
  * <p>
+ * {@link Engine} - встраиваемый обработчик строк (классификация, фильтр, статистика) без привязки к файлам и консоли
+ * <p>
+ * {@link DirectoryWatcher} - класс для режима службы (наблюдение за директорией)
+ * <p>
+ * {@link ShardHandler} и {@link ShardMerger} - классы для обработки одного шарда и объединения шардов
+ * <p>
  * {@link Style} - класс для добавления цвета и стилей текста в консоли
  *
  * <p>Здесь использованы следующие библиотеки: <a href="https://projectlombok.org/">Lombok</a>,
@@ -30,29 +36,63 @@ public class Main {
         System.setOut(new PrintStream(System.out, true, StandardCharsets.UTF_8));
         System.setErr(new PrintStream(System.err, true, StandardCharsets.UTF_8));
 
-        // Инициализация Jansi
-        AnsiConsole.systemInstall();
+        // Инициализация Jansi (только при выводе в терминал). Выполняется до первого вывода, чтобы он уже шел через Jansi
+        Style.init();
 
         System.out.println(Style.setOut("Программа начала работу", true));
 
-        try {
         // Объект с параметрами, которые были переданы в программу
-        Parameters parameters = Parameters.ParseParameters.parse(args);
+        Parameters parameters;
+        try {
+            parameters = Parameters.ParseParameters.parse(args);
+        } catch (ParseException e) {
+            // Если аргументы некорректны, то программа пишет причину и подсказку и завершает работу
+            Parameters.ParseParameters.printUsage(e);
+            Style.uninstall();
+            System.exit(1);
+            return;
+        }
 
-        // Объект StatCalculator для подсчета статистики
-        StatCalculator statCalculator = new StatCalculator();
+        // Флаг успешного завершения. Если наблюдение за директорией не удалось начать, то программа завершается с ненулевым кодом
+        boolean succeeded = true;
+
+        try {
+
+        // Объект StatCalculator для подсчета статистики (шард ищет самые частые значения и без опции -f, см. Parameters#trackTop())
+        StatCalculator statCalculator = new StatCalculator(parameters.trackTop());
 
         // Объект WriterHandler, который будет управлять созданием и закрытием BufferedWriter
-        WriterHandler writerHandler = new WriterHandler(parameters.append());
+        WriterHandler writerHandler = new WriterHandler(parameters.append(), parameters.gzipLevel(), parameters.gzipBlockSize());
+
+        // Объект Engine, который будет классифицировать строки (ошибки чтения выводятся, и программа продолжает работу,
+        // чтение прекращается по прежнему правилу утилиты - на шаге, где во всех файлах оказались пустые строки).
+        // В режиме службы каждый файл читается до конца: состав пакета зависит от того, какие файлы успели записаться,
+        // и пустая строка не должна отбрасывать остаток файла, который затем считается обработанным
+        Engine engine = Engine.builder()
+                .filter(parameters.filter())
+                .trackTop(parameters.trackTop())
+                .stopOnEmptyRound(parameters.watchDir() == null)
+                .readErrorHandler(FileHandler::printReadError)
+                .build();
 
         // Объект FileHandler, который будет заниматься чтением и записью данных
-        FileHandler fileHandler = new FileHandler(writerHandler, statCalculator);
+        // (с опцией --stream строки передаются в файлы и статистику через издатель RecordPublisher)
+        FileHandler fileHandler = new FileHandler(writerHandler, statCalculator, engine, parameters.stream());
 
         // Основной объект Analyzer, который будет управлять процессом анализа
         Analyzer analyzer = new Analyzer(parameters, fileHandler, statCalculator);
 
-        // Выполнение анализ
-        analyzer.analyze();
+        // Выполнение анализа: объединение шардов, обработка одного шарда, наблюдение за директорией (режим службы)
+        // или однократная обработка входных файлов
+        if (parameters.merge()) {
+            analyzer.merge();
+        } else if (parameters.shardIndex() != null) {
+            analyzer.shard();
+        } else if (parameters.watchDir() != null) {
+            succeeded = analyzer.watch();
+        } else {
+            analyzer.analyze();
+        }
 
         // В случае любой непредвиденной ошибки (которая не обрабатывается в процессе выполнения),
         // программа останавливает выполнение и сообщает об этом пользователю
@@ -62,7 +102,11 @@ public class Main {
                     + Style.setErr("Что-то пошло не так: " + e.getMessage() + ". Дальнейшее выполнение программы невозможно\n"));
         }
 
-        // Завершение работы Jansi
-        AnsiConsole.systemUninstall();
+        // Завершение работы Jansi (если он был инициализирован)
+        Style.uninstall();
+
+        if (!succeeded) {
+            System.exit(1);
+        }
     }
 }
\ No newline at end of file
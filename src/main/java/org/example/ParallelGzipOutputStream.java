@@ -0,0 +1,179 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Поток записи в формате gzip, который сжимает данные блоками параллельно (как pigz).
+ * Данные накапливаются в блоке размера {@link ParallelGzipOutputStream#blockSize}, заполненный блок сжимается в пуле потоков
+ * как отдельный элемент (member) gzip: заголовок, данные Deflate, CRC32 и размер.
+ * Сжатые блоки записываются в выходной поток строго в порядке данных, поэтому результат - обычный многоэлементный файл {@code .gz},
+ * который {@code gunzip} (и {@link java.util.zip.GZIPInputStream}) распаковывает в исходный текст.
+ * По той же причине дописывание в существующий файл {@code .gz} (опция -a) дает корректный файл.
+ * <p>Одновременно сжимается не больше {@link ParallelGzipOutputStream#maxPending} блоков: если их больше, то запись ждет самый старый блок,
+ * поэтому память ограничена, даже если пул не успевает сжимать.
+ * <p>Метод {@link ParallelGzipOutputStream#flush()} сжимает неполный блок и записывает все блоки. Пул потоков не закрывается этим классом
+ */
+public class ParallelGzipOutputStream extends FilterOutputStream {
+    /**
+     * Заголовок элемента gzip: сигнатура, метод Deflate, без флагов и времени, ОС не указана
+     */
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final ExecutorService pool;
+    private final int level;
+    private final int blockSize;
+    private final int maxPending;
+    /**
+     * Сжимаемые блоки в порядке данных
+     */
+    private final Queue<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block;
+    private int count = 0;
+    private boolean closed = false;
+
+    /**
+     * @param out выходной поток
+     * @param pool пул потоков для сжатия блоков
+     * @param level уровень сжатия от 0 до 9
+     * @param blockSize размер блока в байтах
+     * @param maxPending максимальное количество блоков, которые сжимаются одновременно
+     */
+    public ParallelGzipOutputStream(OutputStream out, ExecutorService pool, int level, int blockSize, int maxPending) {
+        super(out);
+        this.pool = pool;
+        this.level = level;
+        this.blockSize = blockSize;
+        this.maxPending = maxPending;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[count++] = (byte) b;
+        if (count == blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Сжимает неполный блок, записывает все сжатые блоки и сбрасывает выходной поток
+     * @throws IOException если не удалось сжать или записать блок
+     */
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            submitBlock();
+        }
+        while (!pending.isEmpty()) {
+            writeOldest();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Отправляет текущий блок на сжатие и начинает новый. Если сжимается слишком много блоков, то записывает самый старый
+     */
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = count;
+        pending.add(pool.submit(() -> compress(data, length, level)));
+
+        block = new byte[blockSize];
+        count = 0;
+
+        while (pending.size() > maxPending) {
+            writeOldest();
+        }
+    }
+
+    /**
+     * Ждет сжатия самого старого блока и записывает его в выходной поток
+     */
+    private void writeOldest() throws IOException {
+        try {
+            out.write(pending.remove().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Запись сжатого блока прервана");
+        } catch (ExecutionException e) {
+            throw new IOException("Не удалось сжать блок: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Сжимает блок в отдельный элемент gzip
+     * @param data данные блока
+     * @param length количество байтов данных
+     * @param level уровень сжатия
+     * @return элемент gzip
+     */
+    private static byte[] compress(byte[] data, int length, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+
+            ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + 64);
+            member.writeBytes(HEADER);
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                member.write(buffer, 0, n);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, length);
+            writeIntLE(member, (int) crc.getValue());
+            writeIntLE(member, length);
+            return member.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
@@ -5,17 +5,23 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import org.fusesource.jansi.Ansi;
-import org.fusesource.jansi.AnsiConsole;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Класс с данными об аргументах в командной строке (параметрами).
  * Содержит вложенный класс {@link ParseParameters} с методом {@link ParseParameters#parse(String[])} который читает аргументы командной строки,
- * обновляет значение параметров и возвращает с помощью билдера готовый экземпляр класса {@link Parameters}
+ * обновляет значение параметров и возвращает с помощью билдера готовый экземпляр класса {@link Parameters},
+ * и методом {@link ParseParameters#printUsage(ParseException)}, который выводит ошибку и подсказку по запуску
  *
  * <p>Использована аннотация {@link Builder} библиотеки <a href="https://projectlombok.org/">Lombok</a> для реализации паттерна строителя
  * <p>Использована библиотека <a href="https://commons.apache.org/proper/commons-cli/">Apache Commons Cli</a> для анализа аргументов командной строки
@@ -25,6 +31,15 @@ import java.util.List;
  * @param append флаг о добавлении данных в существующие файлы. Обозначает нужно ли добавлять новые данные в существующие файлы или перезаписывать файлы с новыми данными
  * @param shortStat флаг краткой статистики. Обозначает нужно ли выводить краткую статистику
  * @param fullStat флаг полной статистики. Обозначает нужно ли выводить полную статистику
+ * @param watchDir директория, за которой нужно наблюдать (режим службы). Если не задана, то программа обрабатывает входные файлы и завершает работу
+ * @param doneDir директория, в которую перемещаются обработанные входные файлы в режиме наблюдения. Если не задана, файлы остаются на месте
+ * @param shardIndex номер шарда (от 1 до {@code shardCount}), заданный опцией --shard. Если не задан, то обрабатываются входные файлы целиком
+ * @param shardCount количество шардов, заданное опцией --shard
+ * @param merge флаг команды merge. Обозначает, что вместо входных файлов переданы директории шардов, которые нужно объединить
+ * @param gzipLevel уровень сжатия выходных файлов (опция --gzip). Если не задан, то файлы записываются без сжатия
+ * @param gzipBlockSize размер блока в байтах, который сжимается независимо (опция --gzip-block)
+ * @param filter фильтр строк, собранный из опций --int-min, --int-max, --float-min, --float-max, --str-prefix, --str-regex и --stat-all
+ * @param stream флаг опции --stream. Обозначает, что выходные файлы и статистика получают строки как подписчики {@link RecordPublisher}
   */
 @Builder
 public record Parameters(
@@ -33,30 +48,46 @@ public record Parameters(
         String prefix, // префикс выходящих файлов, заданный пользователем
         Boolean append, // флаг о добавлении данных или перезаписывании файлов
         Boolean shortStat, // флаг краткой статистики
-        Boolean fullStat // флаг полной статистики
+        Boolean fullStat, // флаг полной статистики
+        String watchDir, // директория для наблюдения за новыми входными файлами
+        String doneDir, // директория для обработанных входных файлов
+        Integer shardIndex, // номер шарда
+        Integer shardCount, // количество шардов
+        Boolean merge, // флаг команды merge
+        Integer gzipLevel, // уровень сжатия выходных файлов
+        Integer gzipBlockSize, // размер блока сжатия
+        LineFilter filter, // фильтр строк
+        Boolean stream // флаг записи через издатель классифицированных строк
 ) {
+    /**
+     * @return нужно ли искать самые частые значения: для полной статистики (-f) и всегда при обработке шарда,
+     * потому что полную статистику шардов выводит команда merge, которой нужны их счетчики
+     */
+    public boolean trackTop() {
+        return fullStat || shardIndex != null;
+    }
+
     /**
      * Вложенный класс, занимающийся парсингом аргументов с помощью библиотеки Apache Commons Cli.
-     * Имеет метод {@link ParseParameters#parse(String[])}, которому подаются аргументы командной строки.
+     * Имеет метод {@link ParseParameters#parse(String[])}, которому подаются аргументы командной строки,
+     * и метод {@link ParseParameters#printUsage(ParseException)} для вывода ошибки.
       */
     static class ParseParameters {
         /**
-         * Метод парсинга аргументов командной строки
-         * Вначале с помощью классов {@link Options} и {@link org.apache.commons.cli.Option} создаются все опции.
-         * Затем начинается парсинг аргументов командной строки.
-         * Если парсинг прошел успешно (не выдало исключение {@link ParseException}), то через класс {@code ParametersBuilder},
-         * сгенерированный аннотацией Lombok {@link Builder}, строится экземпляр класса {@link Parameters}, который возвращает данный метод.
-         * Если вылетело исключение, то программа останавливает работу,
-         * а пользователю пишут причину и подсказку с примером, какие опции поддерживает программа и как ее правильно запускать
-         * @param args аргументы командной строки
-         * @return экземпляр класса {@link Parameters}
-         * @see Style#setErrBold()
-         * @see Style#setErr(String)
-         * @see Style#setHelp(String, boolean, boolean)
-         * @see Style#setExample(String, boolean, boolean)
+         * Формат значения опции --shard: номер шарда и количество шардов через косую черту, например {@code 2/4}
+         */
+        private static final Pattern SHARD_PATTERN = Pattern.compile("(\\d{1,9})/(\\d{1,9})");
+        /**
+         * Уровень сжатия и размер блока (в КиБ) по умолчанию для опции --gzip
          */
-        public static Parameters parse(String[] args) {
-            // Создание объекта Options и добавление всех возможных опций
+        private static final int DEFAULT_GZIP_LEVEL = 6;
+        private static final int DEFAULT_GZIP_BLOCK_KIB = 128;
+
+        /**
+         * Метод создания всех опций командной строки с помощью классов {@link Options} и {@link org.apache.commons.cli.Option}
+         * @return опции, которые поддерживает программа
+         */
+        private static Options createOptions() {
             Options options = new Options();
 
             options.addOption("s", "shortStat", false, "Prints short statistics");
@@ -64,51 +95,228 @@ public record Parameters(
             options.addOption("a", "add", false, "Appends data into existing files");
             options.addOption("p", "prefix", true, "Prefix for output files");
             options.addOption("o", "output", true, "Path to output files");
+            options.addOption("w", "watch", true, "Watches directory for new input files and keeps running until stopped");
+            options.addOption("d", "done", true, "Directory to move processed input files to (with -w)");
+            options.addOption(Option.builder().longOpt("shard").hasArg().argName("i/n")
+                    .desc("Processes only shard i of n (1 <= i <= n); shards are combined by the merge command").build());
+            options.addOption(Option.builder().longOpt("gzip")
+                    .desc("Writes output files as .gz, compressing blocks in parallel").build());
+            options.addOption(Option.builder().longOpt("gzip-level").hasArg().argName("0-9")
+                    .desc("Compression level for --gzip (default " + DEFAULT_GZIP_LEVEL + ")").build());
+            options.addOption(Option.builder().longOpt("gzip-block").hasArg().argName("KiB")
+                    .desc("Block size for --gzip in KiB (default " + DEFAULT_GZIP_BLOCK_KIB + ")").build());
+            options.addOption(Option.builder().longOpt("int-min").hasArg().argName("n").desc("Writes only integers >= n").build());
+            options.addOption(Option.builder().longOpt("int-max").hasArg().argName("n").desc("Writes only integers <= n").build());
+            options.addOption(Option.builder().longOpt("float-min").hasArg().argName("x").desc("Writes only floats >= x").build());
+            options.addOption(Option.builder().longOpt("float-max").hasArg().argName("x").desc("Writes only floats <= x").build());
+            options.addOption(Option.builder().longOpt("str-prefix").hasArg().argName("prefix")
+                    .desc("Writes only strings starting with prefix").build());
+            options.addOption(Option.builder().longOpt("str-regex").hasArg().argName("regex")
+                    .desc("Writes only strings containing a match of regex").build());
+            options.addOption(Option.builder().longOpt("stat-all")
+                    .desc("Counts statistics over all lines, including lines rejected by filters").build());
+            options.addOption(Option.builder().longOpt("stream")
+                    .desc("Writes files and statistics as subscribers of the classified record stream").build());
+            return options;
+        }
 
+        /**
+         * Метод парсинга аргументов командной строки.
+         * Если парсинг прошел успешно, то через класс {@code ParametersBuilder},
+         * сгенерированный аннотацией Lombok {@link Builder}, строится экземпляр класса {@link Parameters}, который возвращает данный метод.
+         * Метод ничего не выводит и не завершает программу: об ошибке сообщает исключение {@link ParseException},
+         * которое утилита командной строки выводит методом {@link ParseParameters#printUsage(ParseException)}
+         * @param args аргументы командной строки
+         * @return экземпляр класса {@link Parameters}
+         * @throws ParseException если аргументы некорректны
+         */
+        public static Parameters parse(String[] args) throws ParseException {
             CommandLineParser parser = new DefaultParser();
-            ParametersBuilder builder = Parameters.builder();
+            CommandLine cmd = parser.parse(createOptions(), args);
+
+            // Команда merge передается первым аргументом, остальные аргументы - директории шардов
+            List<String> arguments = List.of(cmd.getArgs());
+            boolean merge = !arguments.isEmpty() && arguments.get(0).equals("merge");
+            if (merge) {
+                arguments = arguments.subList(1, arguments.size());
+            }
 
-            // Парсинг аргументов командной строки
+            Integer shardIndex = null;
+            Integer shardCount = null;
+            if (cmd.hasOption("shard")) {
+                Matcher matcher = SHARD_PATTERN.matcher(cmd.getOptionValue("shard"));
+                if (!matcher.matches()) {
+                    throw new ParseException("Неверный формат опции --shard: " + cmd.getOptionValue("shard") + " (ожидается i/n, например 1/4)");
+                }
+                shardIndex = Integer.valueOf(matcher.group(1));
+                shardCount = Integer.valueOf(matcher.group(2));
+                if (shardIndex < 1 || shardIndex > shardCount) {
+                    throw new ParseException("Номер шарда должен быть от 1 до " + shardCount + ": " + cmd.getOptionValue("shard"));
+                }
+                if (merge || cmd.hasOption("w")) {
+                    throw new ParseException("Опцию --shard нельзя использовать вместе с командой merge или опцией -w");
+                }
+            }
+
+            Integer gzipLevel = cmd.hasOption("gzip") ? DEFAULT_GZIP_LEVEL : null;
+            int gzipBlockKib = DEFAULT_GZIP_BLOCK_KIB;
+            if (cmd.hasOption("gzip-level") || cmd.hasOption("gzip-block")) {
+                if (gzipLevel == null) {
+                    throw new ParseException("Опции --gzip-level и --gzip-block используются только вместе с опцией --gzip");
+                }
+                if (cmd.hasOption("gzip-level")) {
+                    gzipLevel = parseInt(cmd, "gzip-level", 0, 9);
+                }
+                if (cmd.hasOption("gzip-block")) {
+                    gzipBlockKib = parseInt(cmd, "gzip-block", 1, 1024 * 1024);
+                }
+            }
+            if (gzipLevel != null && shardIndex != null) {
+                throw new ParseException("Опцию --gzip нельзя использовать вместе с опцией --shard: файлы шардов не сжимаются, сжатие задается в команде merge");
+            }
+
+            if (cmd.hasOption("stream") && (merge || shardIndex != null)) {
+                throw new ParseException("Опцию --stream нельзя использовать вместе с опцией --shard или командой merge");
+            }
+
+            LineFilter filter = parseFilter(cmd);
+            if (merge && filter != LineFilter.NONE) {
+                throw new ParseException("Фильтры нельзя использовать вместе с командой merge: они применяются при обработке шардов");
+            }
+
+            // Построение параметров на основе аргументов командной строки
+            return Parameters.builder()
+                    .inputFiles(arguments)
+                    .path(cmd.getOptionValue("o"))
+                    .prefix(cmd.getOptionValue("p"))
+                    .append(cmd.hasOption("a"))
+                    .shortStat(cmd.hasOption("s"))
+                    .fullStat(cmd.hasOption("f"))
+                    .watchDir(cmd.getOptionValue("w"))
+                    .doneDir(cmd.getOptionValue("d"))
+                    .shardIndex(shardIndex)
+                    .shardCount(shardCount)
+                    .merge(merge)
+                    .gzipLevel(gzipLevel)
+                    .gzipBlockSize(gzipBlockKib * 1024)
+                    .filter(filter)
+                    .stream(cmd.hasOption("stream"))
+                    .build();
+        }
+
+        /**
+         * Метод вывода ошибки разбора аргументов. Пользователю пишут причину и подсказку с примером,
+         * какие опции поддерживает программа и как ее правильно запускать
+         * @param e исключение, которое выбросил метод {@link ParseParameters#parse(String[])}
+         * @see Style#setErrBold()
+         * @see Style#setErr(String)
+         * @see Style#setHelp(String, boolean, boolean)
+         * @see Style#setExample(String, boolean, boolean)
+         */
+        public static void printUsage(ParseException e) {
+            // Вывод ошибки
+            System.err.println(
+                    Style.setErrBold()
+                    + Style.setErr("Ошибка обработки аргументов: " + e.getMessage() + ". Дальнейшее выполнение программы невозможно\n")
+                    + Style.setHelp("\nСтрока запуска программы и возможные опции:", true, false));
+
+            // Вывод пояснения (подсказки)
+            HelpFormatter formatter = new HelpFormatter();
+            StringWriter help = new StringWriter();
+            formatter.printHelp(new PrintWriter(help), formatter.getWidth(),
+                    "java -jar build/libs/CFT_Test_Task-1.0-SNAPSHOT.jar [merge] [options] [inputFiles | shardDirs]", null, createOptions(),
+                    formatter.getLeftPadding(), formatter.getDescPadding(), null);
+            System.out.print(Style.setHelp(help.toString(), false, false));
+
+            // Вывод примера запуска
+            System.out.println(
+                    Style.setExample("\n\nПример запуска программы из корневой папки проекта:", true, false)
+                    + Style.setExample("\n   java -jar build/libs/CFT_Test_Task-1.0-SNAPSHOT.jar -o path\\to\\files" +
+                            " -s -f -a -p your-prefix inputFile1.txt inputFile2.txt", false, false));
+        }
+
+        /**
+         * Вспомогательный метод для чтения целочисленного значения опции
+         * @param cmd разобранные аргументы командной строки
+         * @param option имя опции
+         * @param min минимальное допустимое значение
+         * @param max максимальное допустимое значение
+         * @return значение опции
+         * @throws ParseException если значение не является целым числом или лежит вне диапазона
+         */
+        private static int parseInt(CommandLine cmd, String option, int min, int max) throws ParseException {
             try {
-                CommandLine cmd = parser.parse(options, args);
-
-                // Построение параметров на основе аргументов командной строки
-                builder = Parameters.builder()
-                        .inputFiles(List.of(cmd.getArgs()))
-                        .path(cmd.getOptionValue("o"))
-                        .prefix(cmd.getOptionValue("p"))
-                        .append(cmd.hasOption("a"))
-                        .shortStat(cmd.hasOption("s"))
-                        .fullStat(cmd.hasOption("f"));
-
-            // Если в процессе парсинга вылетает исключение, то программа останавливает работу,
-            // пишет пользователю причину и пояснение как нужно запускать программу, какие опции она поддерживает
-            } catch (ParseException e) {
-                // Вывод ошибки
-                System.err.println(
-                        Style.setErrBold()
-                        + Style.setErr("Ошибка обработки аргументов: " + e.getMessage() + ". Дальнейшее выполнение программы невозможно\n")
-                        + Style.setHelp("\nСтрока запуска программы и возможные опции:", true, false) + Ansi.ansi().fg(Ansi.Color.YELLOW));
-
-                // Вывод пояснения (подсказки)
-                HelpFormatter formatter = new HelpFormatter();
-                formatter.printHelp("java -jar build/libs/CFT_Test_Task-1.0-SNAPSHOT.jar [options] [inputFiles]", options);
-
-                // Вывод примера запуска
-                System.out.println(
-                        Ansi.ansi().reset()
-                        + Style.setExample("\n\nПример запуска программы из корневой папки проекта:", true, false)
-                        + Style.setExample("\n   java -jar build/libs/CFT_Test_Task-1.0-SNAPSHOT.jar -o path\\to\\files" +
-                                " -s -f -a -p your-prefix inputFile1.txt inputFile2.txt", false, false));
-
-                // Завершение работы Jansi, так как в Main эта строчка не выполнится
-                AnsiConsole.systemUninstall();
-
-                // Принудительная остановка программы, иначе вылетит второе исключение в Main
-                System.exit(1);
+                int value = Integer.parseInt(cmd.getOptionValue(option));
+                if (value >= min && value <= max) {
+                    return value;
+                }
+            } catch (NumberFormatException e) {
+                // Сообщение об ошибке ниже
+            }
+            throw new ParseException("Значение опции --" + option + " должно быть целым числом от " + min + " до " + max + ": " + cmd.getOptionValue(option));
+        }
+
+        /**
+         * Метод сборки фильтра строк из опций командной строки. Фильтр собирается один раз:
+         * числа разбираются, префикс кодируется в UTF-8, регулярное выражение компилируется
+         * @param cmd разобранные аргументы командной строки
+         * @return фильтр строк или {@link LineFilter#NONE}, если ни одна опция фильтра не задана
+         * @throws ParseException если значение опции фильтра некорректно
+         */
+        private static LineFilter parseFilter(CommandLine cmd) throws ParseException {
+            if (!cmd.hasOption("int-min") && !cmd.hasOption("int-max") && !cmd.hasOption("float-min") && !cmd.hasOption("float-max")
+                    && !cmd.hasOption("str-prefix") && !cmd.hasOption("str-regex") && !cmd.hasOption("stat-all")) {
+                return LineFilter.NONE;
+            }
+
+            LineFilter.LineFilterBuilder filter = LineFilter.builder().statAll(cmd.hasOption("stat-all"));
+            String option = null;
+            try {
+                option = "int-min";
+                if (cmd.hasOption(option)) {
+                    filter.intMin(Long.parseLong(cmd.getOptionValue(option)));
+                }
+                option = "int-max";
+                if (cmd.hasOption(option)) {
+                    filter.intMax(Long.parseLong(cmd.getOptionValue(option)));
+                }
+                option = "float-min";
+                if (cmd.hasOption(option)) {
+                    filter.floatMin(parseFloatBound(cmd.getOptionValue(option)));
+                }
+                option = "float-max";
+                if (cmd.hasOption(option)) {
+                    filter.floatMax(parseFloatBound(cmd.getOptionValue(option)));
+                }
+            } catch (NumberFormatException e) {
+                throw new ParseException("Неверное число в опции --" + option + ": " + cmd.getOptionValue(option));
             }
 
-            return builder.build();
+            if (cmd.hasOption("str-prefix")) {
+                filter.strPrefix(cmd.getOptionValue("str-prefix").getBytes(StandardCharsets.UTF_8));
+            }
+            if (cmd.hasOption("str-regex")) {
+                try {
+                    filter.strPattern(Pattern.compile(cmd.getOptionValue("str-regex")));
+                } catch (PatternSyntaxException e) {
+                    throw new ParseException("Неверное регулярное выражение в опции --str-regex: " + e.getDescription());
+                }
+            }
+            return filter.build();
+        }
+
+        /**
+         * Разбирает границу вещественных чисел. {@code NaN} не подходит: с такой границей фильтр отклонял бы все числа
+         * @param value значение опции
+         * @return граница
+         * @throws NumberFormatException если значение не является числом или равно {@code NaN}
+         */
+        private static double parseFloatBound(String value) {
+            double bound = Double.parseDouble(value);
+            if (Double.isNaN(bound)) {
+                throw new NumberFormatException(value);
+            }
+            return bound;
         }
     }
 }
@@ -0,0 +1,190 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Издатель классифицированных строк ({@link ClassifiedRecord}) по стандарту {@link Flow} для подписчиков в той же JVM.
+ * Строки классифицирует {@link Engine}, а вместо записи в файлы каждая строка, прошедшая фильтр, публикуется в виде записи:
+ * значение нужного типа, имя источника и номер строки. С опцией --stat-all публикуются и отклоненные фильтром строки
+ * ({@link ClassifiedRecord#accepted()} равно {@code false}).
+ * <p>Записи доставляются каждому подписчику по порядку в отдельной задаче {@link Executor} с буфером ограниченного размера ({@link SubmissionPublisher}).
+ * Если буфер какого-либо подписчика заполнен (подписчик медленный или не запросил записи через {@link Flow.Subscription#request(long)}),
+ * то чтение источников останавливается, пока место в буфере не освободится. Поэтому память не растет, а скорость чтения определяет самый медленный подписчик.
+ * <p>Запись в файлы и статистика подключаются как обычные подписчики: {@link SinkSubscriber} (например, с приемниками {@link WriterHandler#sinks(java.io.File, java.io.File, java.io.File)})
+ * и {@link StatSubscriber}. Так работает утилита с опцией --stream ({@link FileHandler}), только с пулом {@code Runnable::run}:
+ * подписчики вызываются в потоке чтения, и записи не передаются между потоками.
+ * <pre>{@code
+ * RecordPublisher publisher = new RecordPublisher(Engine.builder().build());
+ * SinkSubscriber files = new SinkSubscriber(writerHandler.sinks(intFile, floatFile, strFile));
+ * StatSubscriber stat = new StatSubscriber(false);
+ * publisher.subscribe(files);
+ * publisher.subscribe(stat);
+ * publisher.subscribe(aggregator);
+ * publisher.publish(List.of("in1.txt"), List.of(LineSource.of(new FileInputStream("in1.txt"))));
+ * files.done().join();
+ * Statistics statistics = stat.result().join();
+ * }</pre>
+ * Подписчиков нужно подключить до вызова {@link RecordPublisher#publish(List, List)}: издатель одноразовый и завершает поток записей после чтения всех источников.
+ * <p>Имеет методы:
+ * <p>{@link RecordPublisher#subscribe(Flow.Subscriber)}
+ * <p>{@link RecordPublisher#publish(List, List)}
+ */
+public class RecordPublisher implements Flow.Publisher<ClassifiedRecord> {
+    private final Engine engine;
+    private final SubmissionPublisher<ClassifiedRecord> publisher;
+    /**
+     * Источник, строка которого сейчас классифицируется. {@link Engine} обрабатывает строку сразу после ее чтения,
+     * поэтому приемники берут из этого поля имя источника и номер строки
+     */
+    private NamedSource current;
+
+    /**
+     * Издатель с пулом {@link ForkJoinPool#commonPool()} и буфером {@link Flow#defaultBufferSize()} записей на подписчика
+     * @param engine обработчик, который классифицирует строки
+     */
+    public RecordPublisher(Engine engine) {
+        this(engine, ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    /**
+     * @param engine обработчик, который классифицирует строки
+     * @param executor пул потоков, в котором записи доставляются подписчикам
+     * @param bufferCapacity максимальное количество записей, которые ждут обработки одним подписчиком
+     */
+    public RecordPublisher(Engine engine, Executor executor, int bufferCapacity) {
+        this.engine = engine;
+        this.publisher = new SubmissionPublisher<>(executor, bufferCapacity);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ClassifiedRecord> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * Читает источники в текущем потоке и публикует записи. Источники читаются по очереди по одной строке, как в {@link Engine#run(List, LaneSinks)}.
+     * Метод блокируется, если буфер какого-либо подписчика заполнен. После чтения всех источников подписчики получают
+     * {@link Flow.Subscriber#onComplete()}, а при ошибке - {@link Flow.Subscriber#onError(Throwable)}.
+     * <p>Сам издатель статистику не ведет (чтобы не считать ее дважды): ее получают подписчики, например {@link StatSubscriber}
+     * @param names имена источников (например, пути входных файлов)
+     * @param sources источники строк (не закрываются)
+     */
+    public void publish(List<String> names, List<? extends LineSource> sources) {
+        List<NamedSource> namedSources = new ArrayList<>();
+        for (int i = 0; i < sources.size(); i++) {
+            namedSources.add(new NamedSource(names.get(i), sources.get(i)));
+        }
+
+        try {
+            engine.run(namedSources, new LaneSinks(integers(), floats(), strings()), null);
+            publisher.close();
+        } catch (RuntimeException e) {
+            publisher.closeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private LineSink integers() {
+        return new LineSink() {
+            @Override
+            public void writeLine(byte[] bytes, int offset, int length) {
+                writeLong(Long.parseLong(new String(bytes, offset, length, StandardCharsets.UTF_8)));
+            }
+
+            @Override
+            public void writeLong(long value) {
+                publisher.submit(new ClassifiedRecord.IntRecord(value, current.name, current.lineNumber, true));
+            }
+
+            @Override
+            public void rejectLong(long value) {
+                publisher.submit(new ClassifiedRecord.IntRecord(value, current.name, current.lineNumber, false));
+            }
+        };
+    }
+
+    private LineSink floats() {
+        return new LineSink() {
+            @Override
+            public void writeLine(byte[] bytes, int offset, int length) {
+                writeDouble(Double.parseDouble(new String(bytes, offset, length, StandardCharsets.UTF_8)));
+            }
+
+            @Override
+            public void writeDouble(double value) {
+                publisher.submit(new ClassifiedRecord.FloatRecord(value, current.name, current.lineNumber, true));
+            }
+
+            @Override
+            public void rejectDouble(double value) {
+                publisher.submit(new ClassifiedRecord.FloatRecord(value, current.name, current.lineNumber, false));
+            }
+        };
+    }
+
+    /**
+     * Приемник строк: байты строки копируются из буфера источника (он изменяется при чтении следующей строки), но не декодируются
+     */
+    private LineSink strings() {
+        return new LineSink() {
+            @Override
+            public void writeLine(byte[] bytes, int offset, int length) {
+                publisher.submit(new ClassifiedRecord.StringRecord(
+                        Arrays.copyOfRange(bytes, offset, offset + length), current.name, current.lineNumber, true));
+            }
+
+            @Override
+            public void rejectLine(byte[] bytes, int offset, int length) {
+                publisher.submit(new ClassifiedRecord.StringRecord(
+                        Arrays.copyOfRange(bytes, offset, offset + length), current.name, current.lineNumber, false));
+            }
+        };
+    }
+
+    /**
+     * Источник с именем и счетчиком строк. При чтении строки становится текущим источником издателя
+     */
+    private class NamedSource implements LineSource {
+        private final String name;
+        private final LineSource source;
+        private long lineNumber = 0;
+
+        private NamedSource(String name, LineSource source) {
+            this.name = name;
+            this.source = source;
+        }
+
+        @Override
+        public boolean readLine() throws IOException {
+            boolean lineRead = source.readLine();
+            if (lineRead) {
+                lineNumber++;
+                current = this;
+            }
+            return lineRead;
+        }
+
+        @Override
+        public byte[] bytes() {
+            return source.bytes();
+        }
+
+        @Override
+        public int offset() {
+            return source.offset();
+        }
+
+        @Override
+        public int length() {
+            return source.length();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.example;
+
+import lombok.RequiredArgsConstructor;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Класс для обработки одного шарда (опция --shard i/n).
+ * Использована аннотация {@link RequiredArgsConstructor} библиотеки <a href="https://projectlombok.org/">Lombok</a> для создания конструктора.
+ * <p>Каждый входной файл делится на {@code n} частей по размеру в байтах, границы частей сдвигаются к началу следующей строки.
+ * Строки разделяются так же, как при однопроцессном запуске ({@link LineReader}): символами {@code \n}, {@code \r} или {@code \r\n}.
+ * Шард {@code i} обрабатывает часть {@code i} каждого входного файла, поэтому шарды не пересекаются и вместе покрывают все строки.
+ * <p>Результат шарда записывается в директорию {@code <префикс>shard-i-of-n} в папке выходных файлов:
+ * <p>{@code <k>-integers.txt}, {@code <k>-floats.txt}, {@code <k>-strings.txt} - данные части входного файла с номером {@code k};
+ * <p>{@code <k>.tape} - по одному байту на каждую строку части: {@code i}, {@code f}, {@code s} (в какой файл записана строка), {@code e} (пустая строка) или {@code x} (строку отклонил фильтр, см. {@link LineFilter}).
+ * По этим байтам команда merge восстанавливает тот же порядок строк, что и при однопроцессном запуске;
+ * <p>{@code <k>-rejected.txt} - строки, которые отклонил фильтр (только с опцией --stat-all: они нужны команде merge, если она пересчитывает статистику);
+ * <p>{@code state.properties} - параметры шарда, список входных файлов и статистика ({@link StatCalculator#store(Properties)}).
+ * <p>Имеет методы:
+ * <p>{@link ShardHandler#readAndWrite(List, String)}
+ * <p>{@link ShardHandler#readRange(Engine, WriterHandler, String, int, File)}
+ * <p>{@link ShardHandler#shardDirName(int, int)}
+ */
+@RequiredArgsConstructor
+public class ShardHandler {
+    /**
+     * Имя файла с параметрами и статистикой шарда
+     */
+    static final String STATE_FILE = "state.properties";
+
+    /**
+     * Экземпляр класса {@link Parameters}
+     */
+    private final Parameters parameters;
+    /**
+     * Экземпляр класса {@link StatCalculator}
+     */
+    private final StatCalculator statCalculator;
+
+    /**
+     * Основной метод класса. Создает директорию шарда, обрабатывает свою часть каждого входного файла
+     * с помощью метода {@link ShardHandler#readRange(Engine, WriterHandler, String, int, File)} и сохраняет параметры и статистику шарда.
+     * Файлы шарда всегда перезаписываются, опция -a к ним не применяется
+     * @param inputFiles список входных файлов в формате {@code String}
+     * @param outputPath путь до выходных файлов (с префиксом)
+     * @return директорию шарда или {@code null}, если ее не удалось создать или записать
+     * @see Style#setErrBold()
+     * @see Style#setErr(String)
+     */
+    public File readAndWrite(List<String> inputFiles, String outputPath) {
+        File shardDir = new File(outputPath + shardDirName(parameters.shardIndex(), parameters.shardCount()));
+
+        try {
+            Files.createDirectories(shardDir.toPath());
+        } catch (IOException e) {
+            System.err.println(Style.setErrBold() + Style.setErr("Не удалось создать директорию шарда: " + shardDir + "\n"));
+            return null;
+        }
+
+        WriterHandler writerHandler = new WriterHandler(false);
+        Engine engine = Engine.builder().filter(parameters.filter()).build();
+
+        for (int k = 0; k < inputFiles.size(); k++) {
+            readRange(engine, writerHandler, inputFiles.get(k), k, shardDir);
+        }
+        writerHandler.closeAllWriters();
+
+        // Параметры и статистика шарда для команды merge
+        Properties state = new Properties();
+        state.setProperty("shard.index", String.valueOf(parameters.shardIndex()));
+        state.setProperty("shard.count", String.valueOf(parameters.shardCount()));
+        state.setProperty("input.count", String.valueOf(inputFiles.size()));
+        state.setProperty("filter.statAll", String.valueOf(parameters.filter().isStatAll()));
+        for (int k = 0; k < inputFiles.size(); k++) {
+            state.setProperty("input." + k, inputFiles.get(k));
+        }
+        statCalculator.store(state);
+
+        try (OutputStream out = new FileOutputStream(new File(shardDir, STATE_FILE))) {
+            state.store(out, "CFT_Test_Task shard " + parameters.shardIndex() + "/" + parameters.shardCount());
+        } catch (IOException e) {
+            System.err.println(Style.setErrBold() + Style.setErr("Не удалось записать статистику шарда: " + e.getMessage() + "\n"));
+            return null;
+        }
+
+        return shardDir;
+    }
+
+    /**
+     * Метод обработки части входного файла. Часть {@code i} из {@code n} содержит строки, первый байт которых
+     * лежит в диапазоне {@code [size * (i - 1) / n, size * i / n)}.
+     * Строки читаются с помощью {@link LineReader}, каждая непустая строка классифицируется и записывается с помощью {@link Engine#classify(byte[], int, int, LaneSinks, StatCalculator)},
+     * а в файл {@code <k>.tape} добавляется байт, обозначающий, куда была записана строка.
+     * С опцией --stat-all строки, отклоненные фильтром, записываются в файл {@code <k>-rejected.txt}.
+     * Если файл не найден или его не удалось прочитать, то выводится ошибка и программа продолжает работу с остальными файлами
+     * @param engine экземпляр класса {@link Engine} для классификации строк
+     * @param writerHandler экземпляр класса {@link WriterHandler} для записи строк
+     * @param inputFile входной файл
+     * @param k номер входного файла в списке
+     * @param shardDir директория шарда
+     * @see Style#setErrBold()
+     * @see Style#setErr(String)
+     */
+    private void readRange(Engine engine, WriterHandler writerHandler, String inputFile, int k, File shardDir) {
+        LaneSinks sinks = writerHandler.sinks(
+                new File(shardDir, k + "-integers.txt"),
+                new File(shardDir, k + "-floats.txt"),
+                new File(shardDir, k + "-strings.txt"));
+        File rejectedFile = new File(shardDir, k + "-rejected.txt");
+
+        try (FileInputStream in = new FileInputStream(inputFile);
+             OutputStream tape = new BufferedOutputStream(new FileOutputStream(new File(shardDir, k + ".tape")))) {
+            long size = in.getChannel().size();
+            long start = size * (parameters.shardIndex() - 1) / parameters.shardCount();
+            long end = size * parameters.shardIndex() / parameters.shardCount();
+
+            LineReader reader = new LineReader(in, start, end);
+            while (reader.readLine()) {
+                if (reader.length() == 0) {
+                    tape.write('e');
+                } else {
+                    Lane lane = engine.classify(reader.bytes(), reader.offset(), reader.length(), sinks, statCalculator);
+                    if (lane == null && parameters.filter().isStatAll()) {
+                        writerHandler.writeLine(rejectedFile, reader.bytes(), reader.offset(), reader.length());
+                    }
+                    tape.write(lane == null ? 'x' : switch (lane) {
+                        case INTEGERS -> 'i';
+                        case FLOATS -> 'f';
+                        case STRINGS -> 's';
+                    });
+                }
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println(
+                    Style.setErrBold() +
+                    Style.setErr("Файл " + inputFile + " не найден. " +
+                    "Программа продолжит работу с остальными файлами (если они были указаны)\n"));
+        } catch (IOException e) {
+            System.err.println(
+                    Style.setErrBold() +
+                    Style.setErr("Не удалось прочитать файл " + inputFile + ": " + e.getMessage() + "\n"));
+        }
+    }
+
+    /**
+     * @param index номер шарда
+     * @param count количество шардов
+     * @return имя директории шарда без префикса
+     */
+    static String shardDirName(int index, int count) {
+        return "shard-" + index + "-of-" + count;
+    }
+}
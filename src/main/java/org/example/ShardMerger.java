@@ -0,0 +1,397 @@
+package org.example;
+
+import lombok.RequiredArgsConstructor;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Класс для команды merge: объединяет результаты шардов ({@link ShardHandler}) в те же выходные файлы и ту же статистику,
+ * что и однопроцессный запуск.
+ * Использована аннотация {@link RequiredArgsConstructor} библиотеки <a href="https://projectlombok.org/">Lombok</a> для создания конструктора.
+ * <p>Строки восстанавливаются в исходном порядке: входные файлы читаются по очереди по одной строке, как в {@link FileHandler},
+ * только вместо строк читаются байты из файлов {@code <k>.tape} всех шардов, а сами данные берутся из файлов шардов.
+ * Чтение прекращается по тому же правилу, что и при однопроцессном запуске: на шаге, где во всех входных файлах оказались пустые строки.
+ * Если после такого шага в шардах остались непустые строки, то статистика шардов их учитывает, поэтому она не используется,
+ * а пересчитывается по строкам, которые попали в выходные файлы (и по отклоненным фильтром строкам, если шарды запускались с опцией --stat-all).
+ * <p>Имеет методы:
+ * <p>{@link ShardMerger#merge(String, File, File, File)}
+ * <p>{@link ShardMerger#findShardDirs(String)}
+ * <p>{@link ShardMerger#loadStates(List)}
+ * <p>{@link ShardMerger#stopsEarly(List, int)}
+ * <p>{@link ShardMerger#copyLine(LineReader, WriterHandler, File, boolean)}
+ * <p>{@link ShardMerger#recountLine(LineReader)}
+ * <p>{@link ShardMerger#concat(List, String)}
+ */
+@RequiredArgsConstructor
+public class ShardMerger {
+    /**
+     * Экземпляр класса {@link Parameters}
+     */
+    private final Parameters parameters;
+    /**
+     * Экземпляр класса {@link StatCalculator}, в который добавляется статистика всех шардов
+     */
+    private final StatCalculator statCalculator;
+    /**
+     * Экземпляр класса {@link Engine} без фильтра для пересчета статистики
+     */
+    private final Engine recountEngine = Engine.builder().build();
+
+    /**
+     * Основной метод класса. Находит директории шардов (переданные в командной строке или найденные методом {@link ShardMerger#findShardDirs(String)}),
+     * проверяет, что все шарды одного запуска на месте, объединяет их статистику и записывает строки в выходные файлы
+     * @param outputPath путь до выходных файлов (с префиксом)
+     * @param intFile выходной файл для целых чисел
+     * @param floatFile выходной файл для вещественных чисел
+     * @param strFile выходной файл для строк
+     * @return {@code true}, если шарды удалось объединить
+     * @see Style#setErrBold()
+     * @see Style#setErr(String)
+     */
+    public boolean merge(String outputPath, File intFile, File floatFile, File strFile) {
+        List<File> shardDirs = new ArrayList<>();
+        for (String dir : parameters.inputFiles()) {
+            shardDirs.add(new File(dir));
+        }
+        if (shardDirs.isEmpty()) {
+            shardDirs = findShardDirs(outputPath);
+        }
+
+        // Директории шардов в порядке их номеров
+        List<File> ordered = loadStates(shardDirs);
+        if (ordered == null) {
+            return false;
+        }
+        int inputCount;
+        boolean statAll;
+        // Нужно ли пересчитать статистику (однопроцессный запуск остановился бы раньше, чем закончились шарды)
+        boolean recount;
+        try {
+            Properties state = readState(ordered.get(0));
+            inputCount = Integer.parseInt(state.getProperty("input.count"));
+            statAll = Boolean.parseBoolean(state.getProperty("filter.statAll"));
+            recount = stopsEarly(ordered, inputCount);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println(Style.setErrBold() + Style.setErr("Не удалось прочитать файлы шардов: " + e.getMessage() + "\n"));
+            return false;
+        }
+        if (recount) {
+            statCalculator.reset();
+        }
+
+        WriterHandler writerHandler = new WriterHandler(parameters.append(), parameters.gzipLevel(), parameters.gzipBlockSize());
+        List<InputStream> tapes = new ArrayList<>();
+        List<LineReader> intReaders = new ArrayList<>();
+        List<LineReader> floatReaders = new ArrayList<>();
+        List<LineReader> strReaders = new ArrayList<>();
+        List<LineReader> rejectedReaders = new ArrayList<>();
+
+        try {
+            for (int k = 0; k < inputCount; k++) {
+                tapes.add(new BufferedInputStream(concat(ordered, k + ".tape")));
+                intReaders.add(new LineReader(concat(ordered, k + "-integers.txt")));
+                floatReaders.add(new LineReader(concat(ordered, k + "-floats.txt")));
+                strReaders.add(new LineReader(concat(ordered, k + "-strings.txt")));
+                rejectedReaders.add(new LineReader(concat(ordered, k + "-rejected.txt")));
+            }
+
+            // Входные файлы читаются по очереди по одной строке, как в FileHandler,
+            // пока на очередном шаге есть хотя бы одна непустая строка
+            boolean filesNotEmpty = true;
+            while (filesNotEmpty) {
+                filesNotEmpty = false;
+
+                for (int k = 0; k < inputCount; k++) {
+                    int code = tapes.get(k).read();
+                    if (code == -1 || code == 'e') {
+                        continue;
+                    }
+                    filesNotEmpty = true;
+
+                    switch (code) {
+                        case 'i' -> copyLine(intReaders.get(k), writerHandler, intFile, recount);
+                        case 'f' -> copyLine(floatReaders.get(k), writerHandler, floatFile, recount);
+                        case 's' -> copyLine(strReaders.get(k), writerHandler, strFile, recount);
+                        default -> {
+                            // Строка, отклоненная фильтром, учитывается в статистике только с опцией --stat-all
+                            if (recount && statAll) {
+                                recountLine(rejectedReaders.get(k));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println(Style.setErrBold() + Style.setErr("Не удалось прочитать файлы шардов: " + e.getMessage() + "\n"));
+            return false;
+        } finally {
+            writerHandler.closeAllWriters();
+            close(tapes);
+            close(intReaders);
+            close(floatReaders);
+            close(strReaders);
+            close(rejectedReaders);
+        }
+
+        return true;
+    }
+
+    /**
+     * Метод проверки, остановился бы однопроцессный запуск раньше, чем закончатся строки шардов.
+     * Читает файлы {@code <k>.tape} по тому же правилу, что и {@link ShardMerger#merge(String, File, File, File)}
+     * @param shardDirs директории шардов в порядке их номеров
+     * @param inputCount количество входных файлов
+     * @return {@code true}, если после шага, на котором чтение прекращается, остались непустые строки
+     * @throws IOException если файлы {@code .tape} не удается прочитать
+     */
+    private boolean stopsEarly(List<File> shardDirs, int inputCount) throws IOException {
+        List<InputStream> tapes = new ArrayList<>();
+        try {
+            for (int k = 0; k < inputCount; k++) {
+                tapes.add(new BufferedInputStream(concat(shardDirs, k + ".tape")));
+            }
+
+            boolean filesNotEmpty = true;
+            while (filesNotEmpty) {
+                filesNotEmpty = false;
+                for (InputStream tape : tapes) {
+                    int code = tape.read();
+                    if (code != -1 && code != 'e') {
+                        filesNotEmpty = true;
+                    }
+                }
+            }
+
+            for (InputStream tape : tapes) {
+                int code;
+                while ((code = tape.read()) != -1) {
+                    if (code != 'e') {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            close(tapes);
+        }
+    }
+
+    /**
+     * Метод копирования следующей строки файла шарда в выходной файл в виде байтов, без перекодирования
+     * @param reader ридер файлов шардов
+     * @param writerHandler экземпляр класса {@link WriterHandler}
+     * @param file выходной файл
+     * @param recount нужно ли добавить строку в статистику. Строки в файлах шардов уже классифицированы, поэтому повторно получают тот же тип
+     * @throws IOException если строку не удается прочитать или файл шарда закончился раньше, чем файл {@code .tape}
+     */
+    private void copyLine(LineReader reader, WriterHandler writerHandler, File file, boolean recount) throws IOException {
+        if (!reader.readLine()) {
+            throw new IOException("файлы шардов не соответствуют файлам .tape");
+        }
+        writerHandler.writeLine(file, reader.bytes(), reader.offset(), reader.length());
+        if (recount) {
+            recountEngine.classify(reader.bytes(), reader.offset(), reader.length(), LaneSinks.discard(), statCalculator);
+        }
+    }
+
+    /**
+     * Метод пересчета статистики по строке, которую отклонил фильтр: читает следующую строку файлов {@code <k>-rejected.txt}
+     * и добавляет ее в статистику так же, как однопроцессный запуск с опцией --stat-all
+     * @param reader ридер файлов шардов с отклоненными строками
+     * @throws IOException если строку не удается прочитать или файл шарда закончился раньше, чем файл {@code .tape}
+     */
+    private void recountLine(LineReader reader) throws IOException {
+        if (!reader.readLine()) {
+            throw new IOException("файлы шардов не соответствуют файлам .tape");
+        }
+        recountEngine.classify(reader.bytes(), reader.offset(), reader.length(), LaneSinks.discard(), statCalculator);
+    }
+
+    /**
+     * Метод поиска директорий шардов в папке выходных файлов. Используется, если директории шардов не указаны в командной строке
+     * @param outputPath путь до выходных файлов (с префиксом)
+     * @return список директорий, имена которых имеют вид {@code <префикс>shard-i-of-n}
+     */
+    private List<File> findShardDirs(String outputPath) {
+        File outputDir = new File(Objects.requireNonNullElse(parameters.path(), "")).getAbsoluteFile();
+        String prefix = Objects.requireNonNullElse(parameters.prefix(), "");
+        Pattern pattern = Pattern.compile(Pattern.quote(prefix) + "shard-\\d+-of-\\d+");
+
+        List<File> shardDirs = new ArrayList<>();
+        File[] files = outputDir == null ? null : outputDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory() && pattern.matcher(file.getName()).matches()) {
+                    shardDirs.add(file);
+                }
+            }
+        }
+        return shardDirs;
+    }
+
+    /**
+     * Метод загрузки параметров и статистики шардов. Проверяет, что все шарды относятся к одному запуску
+     * (одинаковое количество шардов и одинаковые входные файлы) и что присутствуют все шарды от 1 до n.
+     * Статистика всех шардов добавляется в {@link ShardMerger#statCalculator}. С опцией -f выводит предупреждение,
+     * если какой-либо шард записан без поиска самых частых значений (нет свойства {@code stat.trackTop})
+     * @param shardDirs директории шардов в любом порядке
+     * @return директории шардов в порядке их номеров или {@code null}, если шарды не прошли проверку
+     * @see Style#setErrBold()
+     * @see Style#setErr(String)
+     */
+    private List<File> loadStates(List<File> shardDirs) {
+        if (shardDirs.isEmpty()) {
+            System.err.println(Style.setErrBold() + Style.setErr("Не найдено ни одной директории шарда\n"));
+            return null;
+        }
+
+        File[] ordered = null;
+        Properties first = null;
+        List<StatCalculator> stats = new ArrayList<>();
+        // Номера шардов, в которых самые частые значения не искались
+        List<Integer> withoutTop = new ArrayList<>();
+
+        for (File shardDir : shardDirs) {
+            Properties state;
+            try {
+                state = readState(shardDir);
+            } catch (IOException e) {
+                System.err.println(Style.setErrBold() + Style.setErr(
+                        "Не удалось прочитать статистику шарда " + shardDir + ": " + e.getMessage() + "\n"));
+                return null;
+            }
+
+            int index = Integer.parseInt(state.getProperty("shard.index"));
+            int count = Integer.parseInt(state.getProperty("shard.count"));
+
+            if (first == null) {
+                first = state;
+                ordered = new File[count];
+            } else if (!sameRun(first, state)) {
+                System.err.println(Style.setErrBold() + Style.setErr(
+                        "Шард " + shardDir + " относится к другому запуску (другое количество шардов или входные файлы)\n"));
+                return null;
+            }
+
+            if (ordered[index - 1] != null) {
+                System.err.println(Style.setErrBold() + Style.setErr("Шард " + index + " указан дважды: " + shardDir + "\n"));
+                return null;
+            }
+            ordered[index - 1] = shardDir;
+            stats.add(StatCalculator.load(state));
+            if (!Boolean.parseBoolean(state.getProperty("stat.trackTop"))) {
+                withoutTop.add(index);
+            }
+        }
+
+        for (int i = 0; i < ordered.length; i++) {
+            if (ordered[i] == null) {
+                System.err.println(Style.setErrBold() + Style.setErr(
+                        "Не найден шард " + Objects.requireNonNullElse(parameters.prefix(), "")
+                        + ShardHandler.shardDirName(i + 1, ordered.length) + "\n"));
+                return null;
+            }
+        }
+
+        if (parameters.fullStat() && !withoutTop.isEmpty()) {
+            System.err.println(Style.setErrBold() + Style.setErr(
+                    "Шарды " + withoutTop + " записаны без поиска самых частых значений:"
+                    + " самые частые значения в полной статистике могут быть неполными\n"));
+        }
+
+        for (StatCalculator stat : stats) {
+            statCalculator.merge(stat);
+        }
+        return List.of(ordered);
+    }
+
+    /**
+     * @param first параметры первого шарда
+     * @param state параметры проверяемого шарда
+     * @return {@code true}, если у шардов одинаковое количество шардов и одинаковые входные файлы
+     */
+    private boolean sameRun(Properties first, Properties state) {
+        if (!first.getProperty("shard.count").equals(state.getProperty("shard.count"))
+                || !first.getProperty("input.count").equals(state.getProperty("input.count"))) {
+            return false;
+        }
+        int inputCount = Integer.parseInt(first.getProperty("input.count"));
+        for (int k = 0; k < inputCount; k++) {
+            if (!first.getProperty("input." + k).equals(state.getProperty("input." + k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param shardDir директория шарда
+     * @return параметры и статистика шарда
+     * @throws IOException если файл статистики не удается прочитать
+     */
+    private Properties readState(File shardDir) throws IOException {
+        Properties state = new Properties();
+        try (InputStream in = new FileInputStream(new File(shardDir, ShardHandler.STATE_FILE))) {
+            state.load(in);
+        }
+        return state;
+    }
+
+    /**
+     * Метод для последовательного чтения одноименных файлов всех шардов. Файлы открываются по мере чтения,
+     * отсутствующий файл (шард не записал в него ни одной строки) считается пустым
+     * @param shardDirs директории шардов в порядке их номеров
+     * @param name имя файла
+     * @return поток, содержащий файлы всех шардов друг за другом
+     */
+    private InputStream concat(List<File> shardDirs, String name) {
+        Enumeration<InputStream> streams = new Enumeration<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < shardDirs.size();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                File file = new File(shardDirs.get(next++), name);
+                if (!file.exists()) {
+                    return InputStream.nullInputStream();
+                }
+                try {
+                    return new FileInputStream(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return new SequenceInputStream(streams);
+    }
+
+    /**
+     * Метод закрытия потоков шардов
+     * @param streams потоки или ридеры
+     */
+    private void close(List<? extends AutoCloseable> streams) {
+        for (AutoCloseable stream : streams) {
+            try {
+                stream.close();
+            } catch (Exception e) {
+                System.err.println(Style.setErrBold() + Style.setErr("Ошибка при закрытии файла: " + e.getMessage() + "\n"));
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.example;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Встроенный подписчик {@link RecordPublisher}, который передает записи в приемники строк {@link LaneSinks}
+ * (например, в выходные файлы через {@link WriterHandler#sinks(java.io.File, java.io.File, java.io.File)}).
+ * Числа передаются методами {@link LineSink#writeLong(long)} и {@link LineSink#writeDouble(double)}, а строки - в виде байтов UTF-8 без декодирования,
+ * поэтому файлы совпадают с файлами утилиты. Записи строк, которые отклонил фильтр ({@link ClassifiedRecord#accepted()}), пропускаются.
+ * <p>Запрашивает записи без ограничения: память все равно ограничена буфером {@link RecordPublisher}, а если приемник не успевает,
+ * то чтение источников приостанавливается.
+ * Приемники вызываются из одного потока за раз, поэтому не обязаны быть потокобезопасными. Закрывать их (например, {@link WriterHandler#closeAllWriters()})
+ * нужно после завершения {@link SinkSubscriber#done()}
+ */
+public class SinkSubscriber implements Flow.Subscriber<ClassifiedRecord> {
+    private final LaneSinks sinks;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    /**
+     * @param sinks приемники строк
+     */
+    public SinkSubscriber(LaneSinks sinks) {
+        this.sinks = sinks;
+    }
+
+    /**
+     * @return завершается, когда все записи переданы в приемники (или с исключением, если публикация завершилась ошибкой)
+     */
+    public CompletableFuture<Void> done() {
+        return done;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(ClassifiedRecord record) {
+        if (!record.accepted()) {
+            return;
+        }
+        if (record instanceof ClassifiedRecord.IntRecord intRecord) {
+            sinks.integers().writeLong(intRecord.value());
+        } else if (record instanceof ClassifiedRecord.FloatRecord floatRecord) {
+            sinks.floats().writeDouble(floatRecord.value());
+        } else if (record instanceof ClassifiedRecord.StringRecord stringRecord) {
+            sinks.strings().writeLine(stringRecord.bytes(), 0, stringRecord.bytes().length);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        done.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        done.complete(null);
+    }
+}
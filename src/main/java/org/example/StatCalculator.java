@@ -4,6 +4,10 @@ import lombok.Getter;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -11,9 +15,14 @@ import java.util.regex.Pattern;
  * Класс для ведения и вывода статистки. Имеет методы:
  * <p>{@link StatCalculator#updateIntStat(long)} для обновления статистики целых чисел
  * <p>{@link StatCalculator#updateFloatStat(double)} для обновления статистики вещественных чисел
- * <p>{@link StatCalculator#updateStringStat(String)} для обновления статистики трок
+ * <p>{@link StatCalculator#updateStringStat(String)} и {@link StatCalculator#updateStringStat(byte[], int, int, long)} для обновления статистики трок
+ * <p>{@link StatCalculator#merge(StatCalculator)} для добавления статистики другого экземпляра
+ * <p>{@link StatCalculator#reset()} для обнуления статистики
+ * <p>{@link StatCalculator#store(Properties)} и {@link StatCalculator#load(Properties)} для сохранения и загрузки статистики шарда
+ * <p>{@link StatCalculator#snapshot()} для получения неизменяемого снимка статистики
  * <p>{@link StatCalculator#printStat(Parameters)} для вывода статистики
  * <p>{@link StatCalculator#calcMiddle()} для подсчета средних значений
+ * <p>{@link StatCalculator#formatTop(HeavyHitters)} для вывода самых частых значений
  */
 public class StatCalculator {
     /**
@@ -52,6 +61,45 @@ public class StatCalculator {
     private long maxStr = Long.MIN_VALUE;
     private long minStr = Long.MAX_VALUE;
 
+    /**
+     * Количество счетчиков для поиска самых частых значений. Значение, которое встречается чаще, чем в {@code 1/TOP_CAPACITY} строк своего типа,
+     * гарантированно попадает в счетчики
+     */
+    private static final int TOP_CAPACITY = 256;
+    /**
+     * Количество самых частых значений в полной статистике
+     */
+    private static final int TOP_SIZE = 10;
+
+    /**
+     * Самые частые целые числа и строки (алгоритм Space-Saving, фиксированный объем памяти)
+     */
+    private final HeavyHitters<Long> topInt = new HeavyHitters<>(TOP_CAPACITY);
+    private final HeavyHitters<Bytes> topStr = new HeavyHitters<>(TOP_CAPACITY);
+    /**
+     * Изменяемый ключ для поиска строки в {@link StatCalculator#topStr} без копирования байтов
+     */
+    private final Bytes probe = new Bytes();
+    /**
+     * Флаг поиска самых частых значений. Поиск заметно замедляет обработку строк, если почти все строки разные,
+     * поэтому он включается только для полной статистики (опция -f), где выводится результат
+     */
+    private final boolean trackTop;
+
+    /**
+     * Создает экземпляр без поиска самых частых значений
+     */
+    public StatCalculator() {
+        this(false);
+    }
+
+    /**
+     * @param trackTop нужно ли искать самые частые значения
+     */
+    public StatCalculator(boolean trackTop) {
+        this.trackTop = trackTop;
+    }
+
     /**
      * Обновляет статистику целых чисел (количество, максимальное и минимальное значение, сумму)
      * @param n целое число
@@ -61,6 +109,9 @@ public class StatCalculator {
         maxInt = Math.max(maxInt, n);
         minInt = Math.min(minInt, n);
         sumInt += n;
+        if (trackTop) {
+            topInt.add(n);
+        }
     }
 
     /**
@@ -80,9 +131,154 @@ public class StatCalculator {
      * @param str строка
      */
     public void updateStringStat(String str) {
+        byte[] bytes = trackTop ? str.getBytes(StandardCharsets.UTF_8) : null;
+        updateStringStat(bytes, 0, bytes == null ? 0 : bytes.length, str.length());
+    }
+
+    /**
+     * Обновляет статистику строки, записанной в виде байтов UTF-8, по уже известной длине строки (в символах {@code char}, как {@link String#length()}).
+     * Используется для строк, которые копируются в выходной файл в виде байтов: длина считается
+     * методом {@link Utf8#utf16Length(byte[], int, int)}, а счетчик частоты ищется по байтам, без создания {@link String}
+     * @param bytes буфер со строкой
+     * @param offset индекс первого байта строки
+     * @param length длина строки в байтах
+     * @param strLength длина строки в символах
+     */
+    public void updateStringStat(byte[] bytes, int offset, int length, long strLength) {
         cntStr++;
-        maxStr = Math.max(maxStr, str.length());
-        minStr = Math.min(minStr, str.length());
+        maxStr = Math.max(maxStr, strLength);
+        minStr = Math.min(minStr, strLength);
+
+        // Байты копируются, только если строка еще не отслеживается
+        if (trackTop && !topStr.increment(probe.set(bytes, offset, length))) {
+            topStr.insert(probe.copy());
+        }
+    }
+
+    /**
+     * Добавляет к текущей статистике статистику другого экземпляра (количество, максимальные и минимальные значения, суммы).
+     * Используется в режиме наблюдения за директорией для ведения накопленной статистики по всем пакетам
+     * и командой merge для объединения статистики шардов
+     * @param other статистика, которую нужно добавить
+     */
+    public void merge(StatCalculator other) {
+        cntInt += other.cntInt;
+        maxInt = Math.max(maxInt, other.maxInt);
+        minInt = Math.min(minInt, other.minInt);
+        sumInt += other.sumInt;
+
+        cntFloat += other.cntFloat;
+        maxFloat = Math.max(maxFloat, other.maxFloat);
+        minFloat = Math.min(minFloat, other.minFloat);
+        sumFloat = sumFloat.add(other.sumFloat);
+
+        cntStr += other.cntStr;
+        maxStr = Math.max(maxStr, other.maxStr);
+        minStr = Math.min(minStr, other.minStr);
+
+        topInt.merge(other.topInt);
+        topStr.merge(other.topStr);
+    }
+
+    /**
+     * Обнуляет статистику (возвращает все поля к начальным значениям)
+     */
+    public void reset() {
+        cntInt = 0;
+        cntStr = 0;
+        cntFloat = 0;
+
+        maxInt = Long.MIN_VALUE;
+        minInt = Long.MAX_VALUE;
+        sumInt = 0;
+        middleInt2 = 0;
+        middleInt = BigDecimal.ZERO;
+
+        maxFloat = -Double.MAX_VALUE;
+        minFloat = Double.MAX_VALUE;
+        sumFloat = BigDecimal.ZERO;
+        middleFloat = 0.0;
+
+        maxStr = Long.MIN_VALUE;
+        minStr = Long.MAX_VALUE;
+
+        topInt.clear();
+        topStr.clear();
+    }
+
+    /**
+     * Сохраняет статистику в текстовом виде (ключи с префиксом {@code stat.}), чтобы шарды могли передать ее команде merge.
+     * Сумма вещественных чисел сохраняется точно, поэтому объединенная статистика совпадает со статистикой однопроцессного запуска.
+     * Свойство {@code stat.trackTop} показывает, искались ли самые частые значения (иначе их счетчики пустые)
+     * @param properties свойства, в которые записывается статистика
+     */
+    public void store(Properties properties) {
+        properties.setProperty("stat.cntInt", String.valueOf(cntInt));
+        properties.setProperty("stat.maxInt", String.valueOf(maxInt));
+        properties.setProperty("stat.minInt", String.valueOf(minInt));
+        properties.setProperty("stat.sumInt", String.valueOf(sumInt));
+
+        properties.setProperty("stat.cntFloat", String.valueOf(cntFloat));
+        properties.setProperty("stat.maxFloat", String.valueOf(maxFloat));
+        properties.setProperty("stat.minFloat", String.valueOf(minFloat));
+        properties.setProperty("stat.sumFloat", sumFloat.toString());
+
+        properties.setProperty("stat.cntStr", String.valueOf(cntStr));
+        properties.setProperty("stat.maxStr", String.valueOf(maxStr));
+        properties.setProperty("stat.minStr", String.valueOf(minStr));
+
+        properties.setProperty("stat.trackTop", String.valueOf(trackTop));
+        topInt.store(properties, "stat.topInt", String::valueOf);
+        topStr.store(properties, "stat.topStr", Bytes::toString);
+    }
+
+    /**
+     * Загружает статистику, сохраненную методом {@link StatCalculator#store(Properties)}
+     * @param properties свойства со статистикой
+     * @return новый экземпляр класса {@link StatCalculator}, который можно объединить с другими с помощью {@link StatCalculator#merge(StatCalculator)}
+     * @throws NumberFormatException если статистика записана в неверном формате
+     */
+    public static StatCalculator load(Properties properties) {
+        StatCalculator stat = new StatCalculator();
+
+        stat.cntInt = Long.parseLong(properties.getProperty("stat.cntInt"));
+        stat.maxInt = Long.parseLong(properties.getProperty("stat.maxInt"));
+        stat.minInt = Long.parseLong(properties.getProperty("stat.minInt"));
+        stat.sumInt = Long.parseLong(properties.getProperty("stat.sumInt"));
+
+        stat.cntFloat = Long.parseLong(properties.getProperty("stat.cntFloat"));
+        stat.maxFloat = Double.parseDouble(properties.getProperty("stat.maxFloat"));
+        stat.minFloat = Double.parseDouble(properties.getProperty("stat.minFloat"));
+        stat.sumFloat = new BigDecimal(properties.getProperty("stat.sumFloat"));
+
+        stat.cntStr = Long.parseLong(properties.getProperty("stat.cntStr"));
+        stat.maxStr = Long.parseLong(properties.getProperty("stat.maxStr"));
+        stat.minStr = Long.parseLong(properties.getProperty("stat.minStr"));
+
+        stat.topInt.merge(HeavyHitters.load(properties, "stat.topInt", TOP_CAPACITY, Long::valueOf));
+        stat.topStr.merge(HeavyHitters.load(properties, "stat.topStr", TOP_CAPACITY,
+                key -> new Bytes(key.getBytes(StandardCharsets.UTF_8))));
+
+        return stat;
+    }
+
+    /**
+     * Создает неизменяемый снимок статистики (используется {@link Engine})
+     * @return экземпляр класса {@link Statistics}
+     */
+    public Statistics snapshot() {
+        calcMiddle();
+
+        List<HeavyHitters.Entry<String>> topStrings = new ArrayList<>();
+        for (HeavyHitters.Entry<Bytes> entry : topStr.top(TOP_SIZE)) {
+            topStrings.add(new HeavyHitters.Entry<>(entry.key().toString(), entry.count(), entry.error()));
+        }
+
+        return new Statistics(
+                cntInt, minInt, maxInt, sumInt, middleInt,
+                cntFloat, minFloat, maxFloat, sumFloat, middleFloat,
+                cntStr, minStr, maxStr,
+                List.copyOf(topInt.top(TOP_SIZE)), List.copyOf(topStrings));
     }
 
     /**
@@ -121,8 +317,30 @@ public class StatCalculator {
                             "    strings:\n" +
                             "       Кол-во: " + cntStr + "\n" +
                             "       Макс: " + maxStr + "\n" +
-                            "       Мин: " + minStr);
+                            "       Мин: " + minStr + "\n" +
+                            "\nСамые частые значения (оценка частоты, в скобках - погрешность оценки):\n" +
+                            "    integers:\n" + formatTop(topInt) +
+                            "    strings:\n" + formatTop(topStr).stripTrailing());
+        }
+    }
+
+    /**
+     * Формирует список самых частых значений для полной статистики.
+     * Истинная частота значения лежит в диапазоне от {@code оценка - погрешность} до {@code оценка}
+     * @param heavyHitters счетчики самых частых значений
+     * @return строки вида {@code значение: оценка (±погрешность)} по убыванию оценки
+     */
+    private String formatTop(HeavyHitters<?> heavyHitters) {
+        List<? extends HeavyHitters.Entry<?>> top = heavyHitters.top(TOP_SIZE);
+        if (top.isEmpty()) {
+            return "       -\n";
+        }
+
+        String result = "";
+        for (HeavyHitters.Entry<?> entry : top) {
+            result += "       " + entry.key() + ": " + entry.count() + " (±" + entry.error() + ")\n";
         }
+        return result;
     }
 
     /**
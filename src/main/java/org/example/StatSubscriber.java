@@ -0,0 +1,70 @@
+package org.example;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Встроенный подписчик {@link RecordPublisher}, который ведет статистику {@link StatCalculator} по полученным записям.
+ * Учитываются все записи, в том числе записи строк, отклоненных фильтром: издатель публикует их только с опцией --stat-all,
+ * поэтому статистика совпадает со статистикой {@link Engine} (и утилиты) с этой опцией и без нее.
+ * <p>Запрашивает записи без ограничения: память все равно ограничена буфером {@link RecordPublisher}
+ */
+public class StatSubscriber implements Flow.Subscriber<ClassifiedRecord> {
+    private final StatCalculator statCalculator;
+    private final CompletableFuture<Statistics> result = new CompletableFuture<>();
+
+    /**
+     * @param trackTop нужно ли искать самые частые значения
+     */
+    public StatSubscriber(boolean trackTop) {
+        this(new StatCalculator(trackTop));
+    }
+
+    /**
+     * Подписчик, который добавляет статистику в существующий экземпляр (используется утилитой с опцией --stream)
+     * @param statCalculator статистика
+     */
+    public StatSubscriber(StatCalculator statCalculator) {
+        this.statCalculator = statCalculator;
+    }
+
+    /**
+     * @return статистика, когда все записи получены (или исключение, если публикация завершилась ошибкой)
+     */
+    public CompletableFuture<Statistics> result() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(ClassifiedRecord record) {
+        if (record instanceof ClassifiedRecord.IntRecord intRecord) {
+            statCalculator.updateIntStat(intRecord.value());
+        } else if (record instanceof ClassifiedRecord.FloatRecord floatRecord) {
+            statCalculator.updateFloatStat(floatRecord.value());
+        } else if (record instanceof ClassifiedRecord.StringRecord stringRecord) {
+            // Длина строки считается по байтам, без декодирования
+            byte[] bytes = stringRecord.bytes();
+            int strLength = Utf8.utf16Length(bytes, 0, bytes.length);
+            if (strLength >= 0) {
+                statCalculator.updateStringStat(bytes, 0, bytes.length, strLength);
+            } else {
+                statCalculator.updateStringStat(stringRecord.value());
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        result.complete(statCalculator.snapshot());
+    }
+}
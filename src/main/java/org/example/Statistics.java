@@ -0,0 +1,32 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Неизменяемый снимок статистики ({@link StatCalculator#snapshot()}), который возвращает {@link Engine}.
+ * Если элементов какого-либо типа нет, то их количество равно 0, а минимум и максимум не определены
+ * (содержат начальные значения {@link StatCalculator})
+ * @param cntInt количество целых чисел
+ * @param minInt минимальное целое число
+ * @param maxInt максимальное целое число
+ * @param sumInt сумма целых чисел
+ * @param middleInt среднее целых чисел
+ * @param cntFloat количество вещественных чисел
+ * @param minFloat минимальное вещественное число
+ * @param maxFloat максимальное вещественное число
+ * @param sumFloat сумма вещественных чисел
+ * @param middleFloat среднее вещественных чисел
+ * @param cntStr количество строк
+ * @param minStr длина самой короткой строки (в символах {@code char})
+ * @param maxStr длина самой длинной строки (в символах {@code char})
+ * @param topInt самые частые целые числа, если их поиск был включен, иначе пустой список
+ * @param topStr самые частые строки, если их поиск был включен, иначе пустой список
+ */
+public record Statistics(
+        long cntInt, long minInt, long maxInt, long sumInt, BigDecimal middleInt,
+        long cntFloat, double minFloat, double maxFloat, BigDecimal sumFloat, double middleFloat,
+        long cntStr, long minStr, long maxStr,
+        List<HeavyHitters.Entry<Long>> topInt, List<HeavyHitters.Entry<String>> topStr
+) {
+}
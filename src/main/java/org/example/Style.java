@@ -1,10 +1,18 @@
 package org.example;
 
 import org.fusesource.jansi.Ansi;
+import org.fusesource.jansi.AnsiConsole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 /**
  * Класс для установки цвета и стилей текста в командной строке.
  * Использует библиотеку <a href=https://mvnrepository.com/artifact/org.fusesource.jansi/jansi">Jansi</a> для установки стилей и цвета.
+ * Jansi инициализируется методом {@link Style#init()} в начале программы, до первого вывода, и только если стандартный вывод может быть терминалом.
+ * Иначе (вывод перенаправлен в файл или другую программу) Jansi не загружается вовсе, а текст выводится без цвета.
+ * Это заметно сокращает время запуска.
  * Имеет статические методы:
  * <p>{@link Style#setErrBold()} - для добавления жирной красной надписи "ОШИБКА"
  * <p>{@link Style#setErr(String)} - для добавления текста ошибки
@@ -12,14 +20,24 @@ import org.fusesource.jansi.Ansi;
  * <p>{@link Style#setExample(String, boolean, boolean)} - для добавления примера
  * <p>{@link Style#setOut(String, boolean)} - для добавления сообщения об успехе
  * <p>{@link Style#applyStyle(Ansi, boolean, boolean)} - для применения начертаний
+ * <p>{@link Style#init()} - для инициализации Jansi
+ * <p>{@link Style#isColored()} - для проверки цветного вывода
+ * <p>{@link Style#uninstall()} - для завершения работы Jansi
  */
 public class Style {
+    /**
+     * Флаг цветного вывода. {@code null}, пока не вызван {@link Style#init()}
+     */
+    private static Boolean colored;
 
     /**
      *
      * @return жирная строка "ОШИБКА" красного цвета
      */
     public static String setErrBold(){
+        if (!isColored()) {
+            return "\nОШИБКА:\n";
+        }
         return Ansi.ansi()
                 .fg(Ansi.Color.RED)
                 .a(Ansi.Attribute.INTENSITY_BOLD)
@@ -34,6 +52,9 @@ public class Style {
      * @return текст ошибки красного цвета
      */
     public static String setErr(String err){
+        if (!isColored()) {
+            return err;
+        }
         return Ansi.ansi()
                 .fg(Ansi.Color.RED)
                 .a(err)
@@ -51,6 +72,9 @@ public class Style {
      * Если установлен флаг {@code italic} в значение {@code true}, то строка дополнительно становится курсивной
      */
     public static String setHelp(String help, boolean bold, boolean italic){
+        if (!isColored()) {
+            return help;
+        }
         return applyStyle(Ansi.ansi().fg(Ansi.Color.YELLOW), bold, italic)
                 .a(help)
                 .reset()
@@ -67,6 +91,9 @@ public class Style {
      * Если установлен флаг {@code italic} в значение {@code true}, то строка дополнительно становится курсивной
      */
     public static String setExample(String example, boolean bold, boolean italic){
+        if (!isColored()) {
+            return example;
+        }
         return applyStyle(Ansi.ansi().fg(Ansi.Color.BLUE), bold, italic)
                 .a(example)
                 .reset()
@@ -81,6 +108,9 @@ public class Style {
      * Если установлен флаг {@code bold} в значение {@code true}, то строка дополнительно становится жирной
      */
     public static String setOut(String out, boolean bold){
+        if (!isColored()) {
+            return out;
+        }
         return applyStyle(Ansi.ansi().fg(Ansi.Color.GREEN), bold, false)
                 .a(out)
                 .reset()
@@ -97,4 +127,52 @@ public class Style {
         return ansi;
     }
 
+    /**
+     * Определяет, нужен ли цветной вывод, и в этом случае инициализирует Jansi.
+     * Вызывается отдельной инструкцией до первого вывода: Jansi подменяет {@link System#out} и {@link System#err},
+     * и поток, полученный до этого (например, в {@code System.out.println(Style.setOut(...))}), выводил бы коды цветов без обработки
+     */
+    public static synchronized void init() {
+        if (colored == null) {
+            colored = isTerminal();
+            if (colored) {
+                AnsiConsole.systemInstall();
+            }
+        }
+    }
+
+    /**
+     * Проверяет, может ли стандартный вывод быть терминалом. {@link System#console()} есть, только если терминалом являются
+     * и ввод, и вывод, поэтому при перенаправленном вводе ({@code java -jar ... < file}) вывод проверяется отдельно:
+     * в Linux - по ссылке {@code /proc/self/fd/1}, в остальных системах это решает Jansi (при перенаправленном выводе он убирает коды цветов)
+     * @return {@code false}, если вывод точно перенаправлен в файл или другую программу
+     */
+    private static boolean isTerminal() {
+        if (System.console() != null) {
+            return true;
+        }
+        try {
+            String target = Files.readSymbolicLink(Paths.get("/proc/self/fd/1")).toString();
+            return target.startsWith("/dev/pts/") || target.startsWith("/dev/tty");
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return {@code true}, если вывод идет в терминал и Jansi инициализирован. До вызова {@link Style#init()} текст выводится без цвета
+     */
+    private static synchronized boolean isColored() {
+        return Boolean.TRUE.equals(colored);
+    }
+
+    /**
+     * Завершает работу Jansi, если он был инициализирован
+     */
+    public static synchronized void uninstall() {
+        if (Boolean.TRUE.equals(colored)) {
+            AnsiConsole.systemUninstall();
+            colored = null;
+        }
+    }
 }
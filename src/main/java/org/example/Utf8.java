@@ -0,0 +1,136 @@
+package org.example;
+
+/**
+ * Вспомогательный класс для работы со строками в кодировке UTF-8 без создания {@link String}.
+ * Имеет статические методы:
+ * <p>{@link Utf8#utf16Length(byte[], int, int)} - для подсчета длины строки в символах {@code char}
+ * <p>{@link Utf8#mayBeNumber(byte[], int, int)} - для быстрой проверки, может ли строка быть числом
+ */
+public final class Utf8 {
+
+    private Utf8() {
+    }
+
+    /**
+     * Считает длину строки так же, как {@link String#length()}, то есть в кодовых единицах UTF-16:
+     * символы вне BMP (4 байта в UTF-8) занимают 2 единицы, остальные - 1
+     * @param bytes буфер
+     * @param offset индекс первого байта строки
+     * @param length длина строки в байтах
+     * @return длина строки в UTF-16 или {@code -1}, если байты не являются корректной строкой UTF-8
+     */
+    public static int utf16Length(byte[] bytes, int offset, int length) {
+        int units = 0;
+        int i = offset;
+        int end = offset + length;
+
+        while (i < end) {
+            int b = bytes[i];
+            if (b >= 0) {
+                // ASCII
+                i++;
+                units++;
+                continue;
+            }
+
+            int size;
+            int min;
+            if ((b & 0xE0) == 0xC0) {
+                size = 2;
+                min = 0x80;
+            } else if ((b & 0xF0) == 0xE0) {
+                size = 3;
+                min = 0x800;
+            } else if ((b & 0xF8) == 0xF0) {
+                size = 4;
+                min = 0x10000;
+            } else {
+                return -1;
+            }
+            if (i + size > end) {
+                return -1;
+            }
+
+            int cp = b & (0xFF >> (size + 1));
+            for (int k = 1; k < size; k++) {
+                int next = bytes[i + k];
+                if ((next & 0xC0) != 0x80) {
+                    return -1;
+                }
+                cp = (cp << 6) | (next & 0x3F);
+            }
+            // Избыточная запись, суррогаты и значения за пределами Unicode недопустимы
+            if (cp < min || cp > 0x10FFFF || (cp >= 0xD800 && cp <= 0xDFFF)) {
+                return -1;
+            }
+
+            i += size;
+            units += size == 4 ? 2 : 1;
+        }
+
+        return units;
+    }
+
+    /**
+     * Быстрая проверка, может ли строка быть прочитана {@link Long#parseLong(String)} или {@link Double#parseDouble(String)}.
+     * Если метод вернул {@code false}, то строка точно не является числом и ее можно записать в файл строк без декодирования.
+     * <p>{@link Double#parseDouble(String)} пропускает пробельные символы по краям и принимает только символы ASCII,
+     * причем первым значащим символом может быть только знак, цифра, точка или начало {@code NaN} / {@code Infinity}.
+     * {@link Long#parseLong(String)} принимает также цифры других алфавитов (например, арабские), поэтому строка
+     * с символами не из ASCII может быть числом, только если она начинается со знака или цифры ASCII, либо все ее символы - цифры
+     * @param bytes буфер
+     * @param offset индекс первого байта строки
+     * @param length длина строки в байтах
+     * @return {@code false}, если строка точно не является числом
+     */
+    public static boolean mayBeNumber(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+
+        // Пробельные символы (и управляющие символы) в начале строки
+        while (i < end && bytes[i] >= 0 && bytes[i] <= ' ') {
+            i++;
+        }
+        if (i == end) {
+            return false;
+        }
+
+        int first = bytes[i];
+        if (first >= 0) {
+            return first == '+' || first == '-' || first == '.' || (first >= '0' && first <= '9') || first == 'N' || first == 'I';
+        }
+
+        // Строка начинается с символа не из ASCII: числом она может быть только как запись цифрами другого алфавита
+        return i == offset && allDigits(bytes, offset, end);
+    }
+
+    /**
+     * Проверяет, что все символы строки - цифры в понимании {@link Character#digit(char, int)}.
+     * Для символов вне BMP и некорректных последовательностей возвращает {@code true}, чтобы решение принял обычный разбор строки
+     */
+    private static boolean allDigits(byte[] bytes, int from, int to) {
+        int i = from;
+        while (i < to) {
+            int b = bytes[i];
+            int cp;
+            if (b >= 0) {
+                cp = b;
+                i++;
+            } else if ((b & 0xE0) == 0xC0 && i + 1 < to) {
+                cp = ((b & 0x1F) << 6) | (bytes[i + 1] & 0x3F);
+                i += 2;
+            } else if ((b & 0xF0) == 0xE0 && i + 2 < to) {
+                cp = ((b & 0x0F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F);
+                i += 3;
+            } else {
+                // Символ вне BMP или некорректная последовательность: пусть решает обычный разбор строки
+                return true;
+            }
+
+            if (Character.digit((char) cp, 10) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
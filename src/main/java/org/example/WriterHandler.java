@@ -2,15 +2,18 @@ package org.example;
 
 import lombok.RequiredArgsConstructor;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Класс для записи данных в выходные файлы.
@@ -19,28 +22,58 @@ import java.util.Map;
  * <p>{@link WriterHandler#writerMap} для хранения файлов и райтеров в формате ключ-значение,
  * <p>{@link WriterHandler#append} для установки режима добавления в существующие файлы,
  * <p>{@link WriterHandler#isPathCorrect} для определения корректности заданного пути для выходных файлов.
+ * <p>Данные записываются в кодировке UTF-8 через {@link BufferedOutputStream}, поэтому строки, прочитанные в виде байтов,
+ * можно записать методом {@link WriterHandler#writeLine(File, byte[], int, int)} без перекодирования.
  * <p>Основной метод класса {@link WriterHandler#writeLine(File, Object)} использует метод {@link WriterHandler#getWriter(File)} для создания райтера для файла, если он отсутствует,
  * и записывает данные в соответствующие выходные файлы.
  * Метод {@link WriterHandler#getWriter(File)} использует вспомогательный метод {@link WriterHandler#createDirectory(Path)} для создания директории для выходных файлов, если она отсутствует.
  * Метод {@link WriterHandler#creationError()} выводит ошибку, если не удалось создать директорию для выходных файлов
+ * Метод {@link WriterHandler#flushAllWriters()} используется для сброса буферов всех райтеров.
  * Метод {@link WriterHandler#closeAllWriters()} используется для закрытия всех райтеров.
+ * <p>Если задан уровень сжатия {@link WriterHandler#gzipLevel} (опция --gzip), то файлы записываются в формате gzip
+ * с помощью {@link ParallelGzipOutputStream}: блоки всех выходных файлов сжимаются в общем пуле потоков {@link WriterHandler#gzipPool}.
+ * Метод {@link WriterHandler#sinks(File, File, File)} возвращает приемники строк {@link LaneSinks}, которые записывают строки в выходные файлы (используются {@link Engine}).
  */
 @RequiredArgsConstructor
 public class WriterHandler {
+    /**
+     * Размер буфера записи
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
     /**
      * Поле которое содержит файлы и райтеры в формате ключ(файл)-значение(райтер)
      */
-    private final Map<File, BufferedWriter> writerMap = new HashMap<>();
+    private final Map<File, OutputStream> writerMap = new HashMap<>();
     /**
      * Флаг добавления данных в существующие файлы
      */
     private final boolean append;
+    /**
+     * Уровень сжатия gzip от 0 до 9 или {@code null}, если файлы записываются без сжатия
+     */
+    private final Integer gzipLevel;
+    /**
+     * Размер блока, который сжимается независимо, в байтах
+     */
+    private final int gzipBlockSize;
+    /**
+     * Пул потоков для сжатия блоков. Создается при открытии первого сжатого файла и завершается в {@link WriterHandler#closeAllWriters()}
+     */
+    private ExecutorService gzipPool;
     /**
      * Флаг корректности пути. Если не удалось создать директорию или райтер (после создания директории) для выходных файлов,
      * то флаг становится {@code false}, поле чего райтеры и директории больше не создаются
      */
     private boolean isPathCorrect = true;
 
+    /**
+     * Создает экземпляр, который записывает файлы без сжатия
+     * @param append флаг добавления данных в существующие файлы
+     */
+    public WriterHandler(boolean append) {
+        this(append, null, 0);
+    }
+
     /**
      * Основной метод класса. Получает или создает райтер для выходного файла,
      * после чего записыват в файл данные.
@@ -52,12 +85,12 @@ public class WriterHandler {
      */
     public void writeLine(File file, Object value) {
         // Если ключ (файл) отсутствует, то добавляется новое значение с помощью метода
-        BufferedWriter writer = writerMap.computeIfAbsent(file, this::getWriter);
+        OutputStream writer = writerMap.computeIfAbsent(file, this::getWriter);
 
         // Запись данных в выходные файлы
         if (writer != null) {
             try {
-                writer.write(value + "\n");
+                writer.write((value + "\n").getBytes(StandardCharsets.UTF_8));
 
             // Если не удалось записать данные, то программа продолжит работу
             } catch (IOException e) {
@@ -68,6 +101,73 @@ public class WriterHandler {
         }
     }
 
+    /**
+     * Метод записи строки, прочитанной в виде байтов UTF-8 (например, {@link LineReader}), без декодирования и повторного кодирования.
+     * Райтер получается или создается так же, как в {@link WriterHandler#writeLine(File, Object)}
+     * @param file выходной файл
+     * @param bytes буфер со строкой
+     * @param offset индекс первого байта строки
+     * @param length длина строки в байтах
+     * @see Style#setErrBold()
+     * @see Style#setErr(String)
+     */
+    public void writeLine(File file, byte[] bytes, int offset, int length) {
+        OutputStream writer = writerMap.computeIfAbsent(file, this::getWriter);
+
+        if (writer != null) {
+            try {
+                writer.write(bytes, offset, length);
+                writer.write('\n');
+
+            // Если не удалось записать данные, то программа продолжит работу
+            } catch (IOException e) {
+                System.err.println(Style.setErrBold() + Style.setErr(
+                        "Не удалось записать строку " + new String(bytes, offset, length, StandardCharsets.UTF_8) + " в файл " + file
+                        + ". Однако вы сможете увидеть актуальную статистику (если использовали опции -s или -f)\n"));
+            }
+        }
+    }
+
+    /**
+     * Метод получения приемников строк, которые записывают строки в выходные файлы методами этого класса
+     * @param intFile выходной файл для целых чисел
+     * @param floatFile выходной файл для вещественных чисел
+     * @param strFile выходной файл для строк
+     * @return приемники строк для {@link Engine}
+     */
+    public LaneSinks sinks(File intFile, File floatFile, File strFile) {
+        return new LaneSinks(sink(intFile), sink(floatFile), sink(strFile));
+    }
+
+    /**
+     * Вспомогательный метод для {@link WriterHandler#sinks(File, File, File)}
+     * @param file выходной файл
+     * @return приемник строк, который записывает строки в файл
+     */
+    private LineSink sink(File file) {
+        return new LineSink() {
+            @Override
+            public void writeLine(byte[] bytes, int offset, int length) {
+                WriterHandler.this.writeLine(file, bytes, offset, length);
+            }
+
+            @Override
+            public void writeLine(String line) {
+                WriterHandler.this.writeLine(file, line);
+            }
+
+            @Override
+            public void writeLong(long value) {
+                WriterHandler.this.writeLine(file, value);
+            }
+
+            @Override
+            public void writeDouble(double value) {
+                WriterHandler.this.writeLine(file, value);
+            }
+        };
+    }
+
     /**
      * Вспомогательный метод для {@link WriterHandler#writeLine(File, Object)}.
      * Пытается создать райтер, если это не получается, то создает директорию с помощью метода {@link WriterHandler#createDirectory(Path)}.
@@ -75,16 +175,16 @@ public class WriterHandler {
      * то выводит ошибку пользователю с помощью метода {@link WriterHandler#creationError()}
      * и устанавливает флагу {@link WriterHandler#isPathCorrect} значение {@code false}
      * @param file выходной файл
-     * @return экземпляр класса {@link BufferedWriter} для выходного файла
+     * @return экземпляр класса {@link BufferedOutputStream} или {@link ParallelGzipOutputStream} для выходного файла
      */
-    private BufferedWriter getWriter(File file) {
+    private OutputStream getWriter(File file) {
         if (!isPathCorrect) {
             return null;
         }
 
         try {
             // Попытка создать райтер для файла
-            return new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8, append));
+            return openWriter(file);
         } catch (IOException e) {
             // Если выдало исключение, то создается директория для файла,
             // после чего происходит вторая попытка создания райтера
@@ -94,7 +194,7 @@ public class WriterHandler {
                 try {
                     createDirectory(parentPath);
 
-                    return new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8, append));
+                    return openWriter(file);
                 } catch (IOException e1) {
                     // Если снова выдало исключение, то выводится ошибка, о невозможности создания выходных файлов
                     creationError();
@@ -106,6 +206,30 @@ public class WriterHandler {
         return null;
     }
 
+    /**
+     * Вспомогательный метод: открывает файл и создает райтер без сжатия или со сжатием gzip
+     * @param file выходной файл
+     * @return райтер для файла
+     * @throws IOException если не удается открыть файл
+     */
+    private OutputStream openWriter(File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, append);
+        if (gzipLevel == null) {
+            return new BufferedOutputStream(out, BUFFER_SIZE);
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (gzipPool == null) {
+            gzipPool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "gzip");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        // Не больше двух блоков на поток пула для каждого файла, чтобы ограничить память
+        return new ParallelGzipOutputStream(out, gzipPool, gzipLevel, gzipBlockSize, 2 * threads);
+    }
+
     /**
      * Вспомогательный метод для создания директории для выходных файлов, если она отсутствует
      * @param path путь директории
@@ -136,12 +260,29 @@ public class WriterHandler {
     }
 
     /**
-     * Метод для закрытия всех райтеров
+     * Метод для сброса буферов всех райтеров без их закрытия
+     * @see Style#setErrBold()
+     * @see Style#setErr(String)
+     */
+    public void flushAllWriters() {
+        for (OutputStream writer : writerMap.values()) {
+            try {
+                if (writer != null) {
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                System.err.println(Style.setErrBold() + Style.setErr("Ошибка при сбросе буфера записи: " + e.getMessage() + "\n"));
+            }
+        }
+    }
+
+    /**
+     * Метод для закрытия всех райтеров (и пула потоков сжатия, если он был создан)
      * @see Style#setErrBold()
      * @see Style#setErr(String)
      */
     public void closeAllWriters() {
-        for (BufferedWriter writer : writerMap.values()) {
+        for (OutputStream writer : writerMap.values()) {
             try {
                 if (writer != null) {
                     writer.close();
@@ -150,6 +291,11 @@ public class WriterHandler {
                 System.err.println(Style.setErrBold() + Style.setErr("Ошибка при закрытии процесса записи: " + e.getMessage() + "\n"));
             }
         }
+
+        if (gzipPool != null) {
+            gzipPool.shutdown();
+            gzipPool = null;
+        }
     }
 }
 
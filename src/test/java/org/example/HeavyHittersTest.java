@@ -0,0 +1,176 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка {@link HeavyHitters}: оценки частоты остаются в границах {@code [истинная, истинная + погрешность]} после вытеснений,
+ * значения с частотой больше {@code N / capacity} не теряются при объединении ({@link HeavyHitters#merge(HeavyHitters)}),
+ * а {@link HeavyHitters#store(Properties, String, java.util.function.Function)} и {@link HeavyHitters#load(Properties, String, int, java.util.function.Function)}
+ * восстанавливают те же счетчики
+ */
+class HeavyHittersTest {
+    private static final int CAPACITY = 16;
+
+    @Test
+    void countsStayWithinErrorBoundsAfterEvictions() {
+        for (long seed = 1; seed <= 5; seed++) {
+            List<Long> stream = skewedStream(new Random(seed), 20_000, 0);
+            HeavyHitters<Long> heavyHitters = new HeavyHitters<>(CAPACITY);
+            for (Long key : stream) {
+                heavyHitters.add(key);
+            }
+
+            Map<Long, Long> counts = count(stream);
+            // Значений больше, чем счетчиков, поэтому вытеснения действительно были
+            assertTrue(counts.size() > CAPACITY);
+            assertWithinBounds(heavyHitters, counts, stream.size());
+        }
+    }
+
+    @Test
+    void incrementAndInsertMatchAdd() {
+        List<Long> stream = skewedStream(new Random(9), 5_000, 0);
+        HeavyHitters<Long> added = new HeavyHitters<>(CAPACITY);
+        HeavyHitters<Long> split = new HeavyHitters<>(CAPACITY);
+        for (Long key : stream) {
+            added.add(key);
+            if (!split.increment(key)) {
+                split.insert(key);
+            }
+        }
+        assertEquals(entries(added), entries(split));
+    }
+
+    @Test
+    void mergeKeepsFrequentValues() {
+        for (long seed = 1; seed <= 5; seed++) {
+            Random random = new Random(seed);
+            // Потоки с разными значениями (как шарды разных файлов) и с общими значениями (как шарды одного файла)
+            for (long otherOffset : new long[]{1_000, 0}) {
+                List<Long> first = skewedStream(random, 12_000, 0);
+                List<Long> second = skewedStream(random, 8_000, otherOffset);
+
+                HeavyHitters<Long> merged = new HeavyHitters<>(CAPACITY);
+                first.forEach(merged::add);
+                HeavyHitters<Long> other = new HeavyHitters<>(CAPACITY);
+                second.forEach(other::add);
+                merged.merge(other);
+
+                List<Long> all = new ArrayList<>(first);
+                all.addAll(second);
+                assertWithinBounds(merged, count(all), all.size());
+            }
+        }
+    }
+
+    @Test
+    void mergeWithPartlyFilledSketchIsExact() {
+        HeavyHitters<Long> merged = new HeavyHitters<>(CAPACITY);
+        HeavyHitters<Long> other = new HeavyHitters<>(CAPACITY);
+        for (long i = 0; i < 5; i++) {
+            for (long k = 0; k <= i; k++) {
+                merged.add(i);
+                other.add(i + 3);
+            }
+        }
+        merged.merge(other);
+
+        // Счетчиков меньше емкости: вытеснений не было, оценки точные
+        Map<Long, List<Long>> entries = entries(merged);
+        assertEquals(8, entries.size());
+        assertEquals(4L + 1, entries.get(3L).get(0));
+        assertEquals(5L + 2, entries.get(4L).get(0));
+        for (List<Long> entry : entries.values()) {
+            assertEquals(0L, entry.get(1));
+        }
+    }
+
+    @Test
+    void storeAndLoadRoundTrip() {
+        List<Long> stream = skewedStream(new Random(3), 10_000, 0);
+        HeavyHitters<Long> original = new HeavyHitters<>(CAPACITY);
+        for (Long key : stream.subList(0, 6_000)) {
+            original.add(key);
+        }
+
+        Properties properties = new Properties();
+        original.store(properties, "stat.topInt", String::valueOf);
+        HeavyHitters<Long> loaded = HeavyHitters.load(properties, "stat.topInt", CAPACITY, Long::valueOf);
+        assertEquals(entries(original), entries(loaded));
+
+        // Загруженный экземпляр продолжает считать так же, как исходный
+        for (Long key : stream.subList(6_000, stream.size())) {
+            original.add(key);
+            loaded.add(key);
+        }
+        assertEquals(entries(original), entries(loaded));
+
+        // Пустой экземпляр
+        Properties empty = new Properties();
+        new HeavyHitters<Long>(CAPACITY).store(empty, "stat.topInt", String::valueOf);
+        assertTrue(HeavyHitters.load(empty, "stat.topInt", CAPACITY, Long::valueOf).top(CAPACITY).isEmpty());
+    }
+
+    /**
+     * Проверяет границы оценок и то, что все значения с частотой больше {@code N / capacity} отслеживаются
+     */
+    private static void assertWithinBounds(HeavyHitters<Long> heavyHitters, Map<Long, Long> counts, long n) {
+        Map<Long, List<Long>> entries = entries(heavyHitters);
+        assertTrue(entries.size() <= CAPACITY);
+
+        for (Map.Entry<Long, List<Long>> entry : entries.entrySet()) {
+            long actual = counts.getOrDefault(entry.getKey(), 0L);
+            long count = entry.getValue().get(0);
+            long error = entry.getValue().get(1);
+            assertTrue(count - error <= actual && actual <= count,
+                    "значение " + entry.getKey() + ": истинная частота " + actual + ", оценка " + count + ", погрешность " + error);
+        }
+        for (Map.Entry<Long, Long> entry : counts.entrySet()) {
+            if (entry.getValue() > n / CAPACITY) {
+                assertTrue(entries.containsKey(entry.getKey()), "потеряно значение " + entry.getKey() + " с частотой " + entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Поток значений с убывающими частотами (примерно по закону Ципфа) и длинным хвостом редких значений
+     * @param offset сдвиг значений, чтобы получить потоки без общих значений
+     */
+    private static List<Long> skewedStream(Random random, int size, long offset) {
+        List<Long> stream = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            double u = random.nextDouble();
+            stream.add(offset + (long) Math.floor(1 / (u * u + 0.002)) % 500);
+        }
+        return stream;
+    }
+
+    private static Map<Long, Long> count(List<Long> stream) {
+        Map<Long, Long> counts = new HashMap<>();
+        for (Long key : stream) {
+            counts.merge(key, 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * @return счетчики в виде значение -> [оценка, погрешность] (порядок одинаковых оценок в {@link HeavyHitters#top(int)} не важен)
+     */
+    private static Map<Long, List<Long>> entries(HeavyHitters<Long> heavyHitters) {
+        Map<Long, List<Long>> entries = new HashMap<>();
+        for (HeavyHitters.Entry<Long> entry : heavyHitters.top(CAPACITY)) {
+            entries.put(entry.key(), List.of(entry.count(), entry.error()));
+        }
+        return entries;
+    }
+}
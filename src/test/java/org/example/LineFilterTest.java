@@ -0,0 +1,165 @@
+package org.example;
+
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка фильтра строк {@link LineFilter}: границы чисел, префикс по байтам, регулярное выражение,
+ * опция --stat-all и строки {@code NaN}/{@code Infinity}, которые фильтр вещественных чисел не затрагивает
+ */
+class LineFilterTest {
+    @Test
+    void numericBoundsAreInclusive() {
+        LineFilter filter = LineFilter.builder().intMin(-5).intMax(10).floatMin(0.5).floatMax(1.5).build();
+
+        assertTrue(filter.acceptInt(-5));
+        assertTrue(filter.acceptInt(10));
+        assertFalse(filter.acceptInt(-6));
+        assertFalse(filter.acceptInt(11));
+        assertTrue(filter.acceptFloat(0.5));
+        assertTrue(filter.acceptFloat(1.5));
+        assertFalse(filter.acceptFloat(0.49));
+        assertFalse(filter.acceptFloat(1.51));
+
+        assertTrue(LineFilter.NONE.acceptInt(Long.MIN_VALUE));
+        assertTrue(LineFilter.NONE.acceptFloat(-Double.MAX_VALUE));
+    }
+
+    @Test
+    void prefixIsComparedByBytes() {
+        LineFilter filter = LineFilter.builder().strPrefix("ошибка".getBytes(StandardCharsets.UTF_8)).build();
+
+        for (String line : List.of("ошибка", "ошибка: диск", "ОШИБКА", "оши", "", "x ошибка")) {
+            // Строка в середине буфера, чтобы проверить учет смещения
+            byte[] bytes = ("__" + line + "__").getBytes(StandardCharsets.UTF_8);
+            int length = line.getBytes(StandardCharsets.UTF_8).length;
+
+            boolean expected = line.startsWith("ошибка");
+            assertEquals(expected, filter.acceptString(bytes, 2, length), line);
+            assertEquals(expected, filter.acceptString(line), line);
+        }
+    }
+
+    @Test
+    void regexSearchesInsideLine() {
+        LineFilter filter = LineFilter.builder().strPattern(Pattern.compile("\\d{3}")).build();
+
+        for (String line : List.of("code 404", "404", "40x4", "", "строка 1234 конец")) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            boolean expected = Pattern.compile("\\d{3}").matcher(line).find();
+            assertEquals(expected, filter.acceptString(bytes, 0, bytes.length), line);
+            assertEquals(expected, filter.acceptString(line), line);
+        }
+
+        // Префикс и выражение должны совпасть оба
+        LineFilter both = LineFilter.builder().strPrefix("E".getBytes(StandardCharsets.UTF_8)).strPattern(Pattern.compile("\\d")).build();
+        assertTrue(both.acceptString("E1"));
+        assertFalse(both.acceptString("E"));
+        assertFalse(both.acceptString("1E"));
+    }
+
+    @Test
+    void rejectedLinesAreNotWritten() {
+        Output output = run(LineFilter.builder().intMin(0).floatMax(1).strPrefix("a".getBytes(StandardCharsets.UTF_8)).build(),
+                "5\n-3\n0.5\n2.5\nabc\nxyz\n");
+
+        assertEquals("5\n", output.integers());
+        assertEquals("0.5\n", output.floats());
+        assertEquals("abc\n", output.strings());
+        assertEquals(1, output.statistics.cntInt());
+        assertEquals(1, output.statistics.cntFloat());
+        assertEquals(1, output.statistics.cntStr());
+    }
+
+    @Test
+    void statAllCountsRejectedLines() {
+        Output output = run(LineFilter.builder().intMin(0).floatMax(1).strPrefix("a".getBytes(StandardCharsets.UTF_8)).statAll(true).build(),
+                "5\n-3\n0.5\n2.5\nabc\nxyz\n");
+
+        // Выходные файлы те же, а статистика учитывает все строки
+        assertEquals("5\n", output.integers());
+        assertEquals("0.5\n", output.floats());
+        assertEquals("abc\n", output.strings());
+        assertEquals(run(LineFilter.NONE, "5\n-3\n0.5\n2.5\nabc\nxyz\n").statistics, output.statistics);
+    }
+
+    @Test
+    void floatBoundsDoNotRejectNonFiniteLines() {
+        String input = "NaN\nInfinity\nabc\n5.5\n-Infinity\n1e400\n";
+        Output plain = run(LineFilter.NONE, input);
+        assertEquals("NaN\nInfinity\nabc\n-Infinity\n1e400\n", plain.strings());
+        assertEquals("5.5\n", plain.floats());
+
+        for (LineFilter filter : List.of(LineFilter.builder().floatMin(0).build(), LineFilter.builder().floatMax(10).build(),
+                LineFilter.builder().floatMin(100).floatMax(200).build())) {
+            Output filtered = run(filter, input);
+            assertEquals(plain.strings(), filtered.strings());
+            assertEquals(plain.statistics.cntStr(), filtered.statistics.cntStr());
+        }
+
+        // Фильтр строк проверяет их так же, как остальные строки
+        Output prefixed = run(LineFilter.builder().strPrefix("N".getBytes(StandardCharsets.UTF_8)).build(), input);
+        assertEquals("NaN\n", prefixed.strings());
+    }
+
+    @Test
+    void parsesFilterOptions() throws ParseException {
+        LineFilter filter = Parameters.ParseParameters.parse(new String[]{
+                "--int-min", "1", "--float-max", "2.5", "--str-prefix", "ab", "--str-regex", "b$", "--stat-all", "in.txt"}).filter();
+
+        assertTrue(filter.isStatAll());
+        assertFalse(filter.acceptInt(0));
+        assertTrue(filter.acceptFloat(2.5));
+        assertFalse(filter.acceptFloat(2.6));
+        assertTrue(filter.acceptString("ab"));
+        assertFalse(filter.acceptString("abc"));
+
+        assertThrows(ParseException.class, () -> Parameters.ParseParameters.parse(new String[]{"--float-min", "NaN", "in.txt"}));
+        assertThrows(ParseException.class, () -> Parameters.ParseParameters.parse(new String[]{"--int-max", "1.5", "in.txt"}));
+        assertThrows(ParseException.class, () -> Parameters.ParseParameters.parse(new String[]{"--str-regex", "(", "in.txt"}));
+    }
+
+    private static Output run(LineFilter filter, String input) {
+        Output output = new Output();
+        output.statistics = Engine.builder().filter(filter).build().run(
+                LineSource.of(ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8))), output.sinks());
+        return output;
+    }
+
+    /**
+     * Выходные данные каждого типа и статистика
+     */
+    private static class Output {
+        private final ByteArrayOutputStream integers = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream floats = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        private Statistics statistics;
+
+        private LaneSinks sinks() {
+            return new LaneSinks(LineSink.of(integers), LineSink.of(floats), LineSink.of(strings));
+        }
+
+        private String integers() {
+            return integers.toString(StandardCharsets.UTF_8);
+        }
+
+        private String floats() {
+            return floats.toString(StandardCharsets.UTF_8);
+        }
+
+        private String strings() {
+            return strings.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
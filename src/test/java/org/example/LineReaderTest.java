@@ -0,0 +1,161 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверка {@link LineReader}: строки разделяются так же, как в {@link BufferedReader#readLine()},
+ * а диапазоны байтов ({@link LineReader#LineReader(FileInputStream, long, long)}) вместе дают все строки файла ровно по одному разу
+ */
+class LineReaderTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void splitsLinesLikeBufferedReader() throws IOException {
+        List<byte[]> samples = List.of(
+                bytes(""),
+                bytes("a"),
+                bytes("a\n"),
+                bytes("a\r"),
+                bytes("a\r\n"),
+                bytes("\n\n\r\r\n\r"),
+                bytes("a\rb\r\nc\n\rd\n\ne\r\rf"),
+                bytes("a\r1\rb\r2\r3.5\rc\n"),
+                bytes("строка\r\nещё\rи ещё\n"),
+                new byte[]{'x', (byte) 0xE2, (byte) 0x82, '\n', (byte) 0xFF, '\r', (byte) 0xC3, '\r', '\n', 'y'},
+                mixedText(new Random(1), 5000));
+
+        for (byte[] data : samples) {
+            assertEquals(bufferedReaderLines(data), decode(lineReaderLines(data)));
+        }
+    }
+
+    @Test
+    void splitsLinesAcrossBufferBoundaries() throws IOException {
+        // \r в последнем байте начального буфера, \n - в первом байте следующего чтения
+        byte[] crlf = new byte[64 * 1024 + 10];
+        Arrays.fill(crlf, (byte) 'a');
+        crlf[64 * 1024 - 1] = '\r';
+        crlf[64 * 1024] = '\n';
+        assertEquals(bufferedReaderLines(crlf), decode(lineReaderLines(crlf)));
+
+        // Строка длиннее начального буфера
+        byte[] longLine = (("x".repeat(200_000)) + "\r\n" + "y".repeat(70_000) + "\rz").getBytes(StandardCharsets.UTF_8);
+        assertEquals(bufferedReaderLines(longLine), decode(lineReaderLines(longLine)));
+    }
+
+    @Test
+    void rangesCoverEveryLineOnce() throws IOException {
+        byte[] data = bytes("a\r1\rb\r\n2\n\n3.5\r\rc\r\n\r\nлиния\rend");
+        Path file = Files.write(dir.resolve("ranges.txt"), data);
+        List<String> expected = decode(lineReaderLines(data));
+
+        // Любая граница двух частей, в том числе между \r и \n
+        for (int split = 0; split <= data.length; split++) {
+            List<String> actual = new ArrayList<>();
+            actual.addAll(decode(rangeLines(file, 0, split)));
+            actual.addAll(decode(rangeLines(file, split, data.length)));
+            assertEquals(expected, actual, "граница: " + split);
+        }
+
+        // Любые три части
+        for (int first = 0; first <= data.length; first++) {
+            for (int second = first; second <= data.length; second++) {
+                List<String> actual = new ArrayList<>();
+                actual.addAll(decode(rangeLines(file, 0, first)));
+                actual.addAll(decode(rangeLines(file, first, second)));
+                actual.addAll(decode(rangeLines(file, second, data.length)));
+                assertEquals(expected, actual, "границы: " + first + ", " + second);
+            }
+        }
+    }
+
+    @Test
+    void rangesMatchShardSplitting() throws IOException {
+        byte[] data = mixedText(new Random(7), 3000);
+        Path file = Files.write(dir.resolve("shards.txt"), data);
+        List<String> expected = decode(lineReaderLines(data));
+
+        // Границы частей считаются так же, как в ShardHandler
+        for (int n = 1; n <= 16; n++) {
+            List<String> actual = new ArrayList<>();
+            for (int i = 1; i <= n; i++) {
+                actual.addAll(decode(rangeLines(file, (long) data.length * (i - 1) / n, (long) data.length * i / n)));
+            }
+            assertEquals(expected, actual, "шардов: " + n);
+        }
+    }
+
+    /**
+     * Текст из коротких строк (числа, в том числе {@code NaN} и бесконечности, слова, пустые строки) со случайными разделителями {@code \n}, {@code \r} и {@code \r\n}
+     */
+    static byte[] mixedText(Random random, int lines) {
+        String[] words = {"", "1", "-42", "3.5", "abc", "строка", "😀", " ", "1e3", "NaN", "Infinity", "-Infinity"};
+        String[] endings = {"\n", "\r", "\r\n"};
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append(words[random.nextInt(words.length)]).append(endings[random.nextInt(endings.length)]);
+        }
+        return bytes(text.toString());
+    }
+
+    private static List<String> bufferedReaderLines(byte[] data) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static List<byte[]> lineReaderLines(byte[] data) throws IOException {
+        return readAll(new LineReader(new ByteArrayInputStream(data)));
+    }
+
+    private static List<byte[]> rangeLines(Path file, long start, long end) throws IOException {
+        try (LineReader reader = new LineReader(new FileInputStream(file.toFile()), start, end)) {
+            return readAll(reader);
+        }
+    }
+
+    private static List<byte[]> readAll(LineReader reader) throws IOException {
+        List<byte[]> lines = new ArrayList<>();
+        while (reader.readLine()) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            line.write(reader.bytes(), reader.offset(), reader.length());
+            lines.add(line.toByteArray());
+        }
+        return lines;
+    }
+
+    private static List<String> decode(List<byte[]> lines) {
+        List<String> decoded = new ArrayList<>();
+        for (byte[] line : lines) {
+            decoded.add(new String(line, StandardCharsets.UTF_8));
+        }
+        return decoded;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,192 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Проверка {@link ParallelGzipOutputStream}: {@link GZIPInputStream} (как и {@code gunzip}) распаковывает результат точно в исходные данные
+ * при любом размере блока, после {@link ParallelGzipOutputStream#flush()} между записями и при дописывании в существующий файл,
+ * а количество сжимаемых блоков ограничено {@code maxPending}
+ */
+class ParallelGzipOutputStreamTest {
+    private final ExecutorService pool = Executors.newFixedThreadPool(3);
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void shutdownPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void roundTripsWithDifferentBlockSizes() throws IOException {
+        Random random = new Random(5);
+        for (int blockSize : new int[]{1024, 1000, 4096, 64 * 1024}) {
+            for (int size : new int[]{1, 1023, 1024, 1025, 10 * 1024, 300_000}) {
+                byte[] data = data(random, size);
+
+                ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+                try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(gzip, pool, 6, blockSize, 2)) {
+                    writeInChunks(out, data, random);
+                }
+                assertArrayEquals(data, gunzip(gzip.toByteArray()), "блок: " + blockSize + ", размер: " + size);
+            }
+        }
+    }
+
+    @Test
+    void roundTripsWithEveryLevel() throws IOException {
+        byte[] data = data(new Random(6), 50_000);
+        for (int level = 0; level <= 9; level++) {
+            ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+            try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(gzip, pool, level, 1024, 4)) {
+                out.write(data);
+            }
+            assertArrayEquals(data, gunzip(gzip.toByteArray()), "уровень: " + level);
+        }
+    }
+
+    @Test
+    void flushWritesPartialBlock() throws IOException {
+        Random random = new Random(7);
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+        // Как в режиме службы: после каждого пакета записанное уже можно распаковать
+        try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(gzip, pool, 6, 1024, 2)) {
+            for (int batch = 0; batch < 20; batch++) {
+                byte[] data = data(random, random.nextInt(3000) + 1);
+                writeInChunks(out, data, random);
+                expected.writeBytes(data);
+
+                out.flush();
+                assertArrayEquals(expected.toByteArray(), gunzip(gzip.toByteArray()), "пакет: " + batch);
+            }
+            // Повторный flush без новых данных не добавляет пустых элементов
+            int size = gzip.size();
+            out.flush();
+            assertEquals(size, gzip.size());
+        }
+        assertArrayEquals(expected.toByteArray(), gunzip(gzip.toByteArray()));
+    }
+
+    @Test
+    void appendsToExistingFile() throws IOException {
+        Random random = new Random(8);
+        Path file = dir.resolve("integers.txt.gz");
+        byte[] first = data(random, 5000);
+        byte[] second = data(random, 7000);
+
+        try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(new FileOutputStream(file.toFile()), pool, 6, 1024, 2)) {
+            out.write(first);
+        }
+        // Дописывание, как с опцией -a
+        try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(new FileOutputStream(file.toFile(), true), pool, 6, 1024, 2)) {
+            out.write(second);
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.writeBytes(first);
+        expected.writeBytes(second);
+        assertArrayEquals(expected.toByteArray(), gunzip(Files.readAllBytes(file)));
+    }
+
+    @Test
+    void waitsWhenTooManyBlocksPending() throws Exception {
+        int maxPending = 3;
+        ThreadPoolExecutor singleThread = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        try {
+            // Поток пула занят, поэтому ни один блок не сжимается, пока не открыт gate
+            singleThread.submit(() -> {
+                gate.await();
+                return null;
+            });
+
+            byte[] data = data(new Random(9), 10 * 1024);
+            ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+            ParallelGzipOutputStream out = new ParallelGzipOutputStream(gzip, singleThread, 6, 1024, maxPending);
+            Thread writer = new Thread(() -> {
+                try {
+                    out.write(data);
+                    out.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            writer.start();
+
+            // Запись останавливается на блоке maxPending + 1 и ждет сжатия самого старого
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (writer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(Thread.State.WAITING, writer.getState());
+            assertEquals(maxPending + 1, singleThread.getQueue().size());
+            assertEquals(0, gzip.size());
+
+            gate.countDown();
+            writer.join(10_000);
+            assertFalse(writer.isAlive());
+            assertArrayEquals(data, gunzip(gzip.toByteArray()));
+        } finally {
+            gate.countDown();
+            singleThread.shutdownNow();
+        }
+    }
+
+    /**
+     * Данные из строк текста и случайных байтов, чтобы блоки сжимались по-разному
+     */
+    private static byte[] data(Random random, int size) {
+        byte[] data = new byte[size];
+        byte[] text = "строка 12345 3.25 abc\n".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < size; i++) {
+            data[i] = (i / 512) % 2 == 0 ? text[i % text.length] : (byte) random.nextInt();
+        }
+        return data;
+    }
+
+    /**
+     * Записывает данные частями случайного размера, в том числе по одному байту
+     */
+    private static void writeInChunks(ParallelGzipOutputStream out, byte[] data, Random random) throws IOException {
+        int offset = 0;
+        while (offset < data.length) {
+            int n = Math.min(data.length - offset, random.nextInt(2500) + 1);
+            if (n == 1) {
+                out.write(data[offset]);
+            } else {
+                out.write(data, offset, n);
+            }
+            offset += n;
+        }
+    }
+
+    private static byte[] gunzip(byte[] gzip) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package org.example;
+
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка {@link RecordPublisher}: подписчики {@link SinkSubscriber} и {@link StatSubscriber} получают те же выходные данные и ту же статистику,
+ * что и {@link Engine#run(List, LaneSinks)}, а чтение источников не опережает медленного подписчика больше чем на размер буфера
+ */
+class RecordPublisherTest {
+    private static final List<LineFilter> FILTERS = List.of(
+            LineFilter.NONE,
+            LineFilter.builder().intMin(0).floatMax(10).strPrefix("с".getBytes(StandardCharsets.UTF_8)).build(),
+            LineFilter.builder().intMin(0).floatMax(10).strPattern(Pattern.compile("b")).statAll(true).build());
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sameAsEngineWithDirectExecutor() {
+        assertSameAsEngine(Runnable::run);
+    }
+
+    @Test
+    void sameAsEngineWithCommonPool() {
+        assertSameAsEngine(ForkJoinPool.commonPool());
+    }
+
+    @Test
+    void readingWaitsForSlowSubscriber() throws Exception {
+        int bufferCapacity = 16;
+        int lineCount = 300;
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= lineCount; i++) {
+            text.append(i).append('\n');
+        }
+        byte[] data = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        AtomicLong read = new AtomicLong();
+        LineSource source = counting(LineSource.of(new ByteArrayInputStream(data)), read);
+        SlowSubscriber subscriber = new SlowSubscriber(read);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RecordPublisher publisher = new RecordPublisher(Engine.builder().build(), executor, bufferCapacity);
+            publisher.subscribe(subscriber);
+            publisher.publish(List.of("in.txt"), List.of(source));
+            subscriber.done.join();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(lineCount, subscriber.received);
+        // Запись, которую обрабатывает подписчик, записи в буфере и одна прочитанная строка, ожидающая места в буфере
+        assertTrue(subscriber.maxLead <= bufferCapacity + 1, "опережение чтения: " + subscriber.maxLead);
+        // Буфер действительно заполнялся, то есть чтение ожидало подписчика
+        assertTrue(subscriber.maxLead >= bufferCapacity, "опережение чтения: " + subscriber.maxLead);
+    }
+
+    @Test
+    void streamOptionSameAsDefault() throws Exception {
+        Path first = Files.write(dir.resolve("in1.txt"), LineReaderTest.mixedText(new Random(3), 2000));
+        Path second = Files.write(dir.resolve("in2.txt"), LineReaderTest.mixedText(new Random(4), 1500));
+
+        for (List<String> options : List.of(List.of("-f"), List.of("-f", "--int-min", "0", "--float-min", "0", "--str-prefix", "с"),
+                List.of("-f", "--int-min", "0", "--float-max", "10", "--str-prefix", "с", "--stat-all"))) {
+            Path plainDir = dir.resolve("plain-" + options.size());
+            Path streamDir = dir.resolve("stream-" + options.size());
+
+            Statistics expected = run(options, plainDir, first, second);
+            List<String> streamOptions = new ArrayList<>(options);
+            streamOptions.add("--stream");
+            Statistics actual = run(streamOptions, streamDir, first, second);
+
+            for (String name : List.of("integers.txt", "floats.txt", "strings.txt")) {
+                assertArrayEquals(Files.readAllBytes(plainDir.resolve(name)), Files.readAllBytes(streamDir.resolve(name)), name + ", " + options);
+            }
+            assertEquals(expected, actual, options.toString());
+        }
+    }
+
+    @Test
+    void streamOptionRejectsShards() {
+        assertThrows(ParseException.class,
+                () -> Parameters.ParseParameters.parse(new String[]{"--stream", "--shard", "1/2", "in.txt"}));
+    }
+
+    /**
+     * Сравнивает издатель с {@link Engine#run(List, LaneSinks)} на двух источниках для каждого фильтра из {@link RecordPublisherTest#FILTERS}
+     * @param executor пул, в котором записи доставляются подписчикам
+     */
+    private static void assertSameAsEngine(Executor executor) {
+        byte[] first = LineReaderTest.mixedText(new Random(11), 4000);
+        byte[] second = LineReaderTest.mixedText(new Random(12), 2500);
+
+        for (LineFilter filter : FILTERS) {
+            Engine engine = Engine.builder().filter(filter).trackTop(true).build();
+
+            Output expected = new Output();
+            Statistics expectedStatistics = engine.run(
+                    List.of(LineSource.of(new ByteArrayInputStream(first)), LineSource.of(new ByteArrayInputStream(second))), expected.sinks());
+
+            Output actual = new Output();
+            RecordPublisher publisher = new RecordPublisher(engine, executor, Flow.defaultBufferSize());
+            SinkSubscriber files = new SinkSubscriber(actual.sinks());
+            StatSubscriber stat = new StatSubscriber(true);
+            publisher.subscribe(files);
+            publisher.subscribe(stat);
+            publisher.publish(List.of("in1.txt", "in2.txt"),
+                    List.of(LineSource.of(new ByteArrayInputStream(first)), LineSource.of(new ByteArrayInputStream(second))));
+            files.done().join();
+
+            String message = "statAll: " + filter.isStatAll();
+            assertArrayEquals(expected.integers.toByteArray(), actual.integers.toByteArray(), "integers, " + message);
+            assertArrayEquals(expected.floats.toByteArray(), actual.floats.toByteArray(), "floats, " + message);
+            assertArrayEquals(expected.strings.toByteArray(), actual.strings.toByteArray(), "strings, " + message);
+            assertEquals(expectedStatistics, stat.result().join(), message);
+        }
+    }
+
+    /**
+     * Запускает утилиту так же, как {@link Main}, но без вывода итоговых сообщений о завершении программы
+     * @param options опции командной строки
+     * @param outputDir директория выходных файлов
+     * @param inputs входные файлы
+     * @return статистика запуска
+     */
+    private static Statistics run(List<String> options, Path outputDir, Path... inputs) throws ParseException {
+        List<String> args = new ArrayList<>(options);
+        args.addAll(List.of("-o", outputDir.toString()));
+        for (Path input : inputs) {
+            args.add(input.toString());
+        }
+
+        Parameters parameters = Parameters.ParseParameters.parse(args.toArray(new String[0]));
+        StatCalculator statCalculator = new StatCalculator(parameters.trackTop());
+        WriterHandler writerHandler = new WriterHandler(parameters.append(), parameters.gzipLevel(), parameters.gzipBlockSize());
+        Engine engine = Engine.builder()
+                .filter(parameters.filter())
+                .trackTop(parameters.trackTop())
+                .stopOnEmptyRound(true)
+                .readErrorHandler(FileHandler::printReadError)
+                .build();
+        new Analyzer(parameters, new FileHandler(writerHandler, statCalculator, engine, parameters.stream()), statCalculator).analyze();
+        return statCalculator.snapshot();
+    }
+
+    /**
+     * Источник, который считает прочитанные строки
+     */
+    private static LineSource counting(LineSource source, AtomicLong read) {
+        return new LineSource() {
+            @Override
+            public boolean readLine() throws IOException {
+                boolean lineRead = source.readLine();
+                if (lineRead) {
+                    read.incrementAndGet();
+                }
+                return lineRead;
+            }
+
+            @Override
+            public byte[] bytes() {
+                return source.bytes();
+            }
+
+            @Override
+            public int offset() {
+                return source.offset();
+            }
+
+            @Override
+            public int length() {
+                return source.length();
+            }
+        };
+    }
+
+    /**
+     * Медленный подписчик: запрашивает по одной записи и запоминает, насколько чтение источника опережало обработку
+     */
+    private static class SlowSubscriber implements Flow.Subscriber<ClassifiedRecord> {
+        private final AtomicLong read;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private long received = 0;
+        private long maxLead = 0;
+
+        private SlowSubscriber(AtomicLong read) {
+            this.read = read;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ClassifiedRecord record) {
+            received++;
+            if (record.lineNumber() != received) {
+                done.completeExceptionally(new AssertionError("строка " + record.lineNumber() + " вместо " + received));
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            maxLead = Math.max(maxLead, read.get() - received);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+    }
+
+    /**
+     * Выходные данные каждого типа
+     */
+    private static class Output {
+        private final ByteArrayOutputStream integers = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream floats = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+
+        private LaneSinks sinks() {
+            return new LaneSinks(LineSink.of(integers), LineSink.of(floats), LineSink.of(strings));
+        }
+    }
+}
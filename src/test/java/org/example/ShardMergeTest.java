@@ -0,0 +1,186 @@
+package org.example;
+
+import org.apache.commons.cli.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверка шардирования: шарды ({@link ShardHandler}), объединенные командой merge ({@link ShardMerger}),
+ * дают те же выходные файлы и ту же статистику, что и однопроцессный запуск
+ */
+class ShardMergeTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void crOnlyLineEndings() throws Exception {
+        Path input = write("cr.txt", "a\r1\rb\r2\r3.5\rc\n");
+
+        for (int n = 1; n <= 4; n++) {
+            assertSameAsSingleProcess(List.of(), n, input);
+        }
+    }
+
+    @Test
+    void mixedLineEndingsAtShardBoundaries() throws Exception {
+        // Строки разной длины, чтобы границы шардов попадали и между \r и \n, и сразу после них
+        StringBuilder text = new StringBuilder();
+        String[] endings = {"\n", "\r", "\r\n"};
+        for (int i = 0; i < 60; i++) {
+            String line = switch (i % 5) {
+                case 0 -> String.valueOf(i * 7);
+                case 1 -> i + ".25";
+                case 2 -> "строка " + i;
+                case 3 -> "";
+                default -> "x".repeat(i % 7);
+            };
+            text.append(line).append(endings[i % endings.length]);
+        }
+        Path input = write("mixed.txt", text.toString());
+
+        for (int n = 1; n <= 9; n++) {
+            assertSameAsSingleProcess(List.of(), n, input);
+        }
+    }
+
+    @Test
+    void blankRoundStopsMerge() throws Exception {
+        // На третьем шаге в обоих файлах пустые строки: однопроцессный запуск на этом останавливается
+        Path first = write("b1.txt", "1\nx\n\n5\nyy\n2.5\n");
+        Path second = write("b2.txt", "q\nw\n\n7\nz\n");
+
+        for (int n = 1; n <= 3; n++) {
+            assertSameAsSingleProcess(List.of(), n, first, second);
+        }
+    }
+
+    @Test
+    void blankRoundWithStatAll() throws Exception {
+        Path first = write("b1.txt", "1\nx\n\n5\nyy\n2.5\n-3\n");
+        Path second = write("b2.txt", "9\r\ny\r\n\r\n7\r\nz\r\n");
+
+        for (int n = 1; n <= 3; n++) {
+            assertSameAsSingleProcess(List.of("--int-min", "3", "--str-prefix", "y", "--stat-all"), n, first, second);
+            assertSameAsSingleProcess(List.of("--int-min", "3", "--str-prefix", "y"), n, first, second);
+        }
+    }
+
+    /**
+     * Сравнивает однопроцессный запуск с объединением {@code shardCount} шардов
+     * @param options опции обработки (фильтры)
+     * @param shardCount количество шардов
+     * @param inputs входные файлы
+     */
+    private void assertSameAsSingleProcess(List<String> options, int shardCount, Path... inputs) throws Exception {
+        String run = "run-" + String.join("", options).hashCode() + "-" + shardCount;
+        Path singleDir = dir.resolve(run + "-single");
+        Path shardDir = dir.resolve(run + "-shards");
+
+        List<String> args = new ArrayList<>(options);
+        args.addAll(List.of("-o", singleDir.toString()));
+        for (Path input : inputs) {
+            args.add(input.toString());
+        }
+        Statistics expected = run(args);
+
+        for (int i = 1; i <= shardCount; i++) {
+            List<String> shardArgs = new ArrayList<>(options);
+            shardArgs.addAll(List.of("--shard", i + "/" + shardCount, "-o", shardDir.toString()));
+            for (Path input : inputs) {
+                shardArgs.add(input.toString());
+            }
+            run(shardArgs);
+        }
+        Statistics actual = run(List.of("merge", "-o", shardDir.toString()));
+
+        String message = "шардов: " + shardCount + ", опции: " + options;
+        for (String name : List.of("integers.txt", "floats.txt", "strings.txt")) {
+            assertArrayEquals(read(singleDir.resolve(name)), read(shardDir.resolve(name)), name + ", " + message);
+        }
+        assertEquals(withoutTop(expected), withoutTop(actual), message);
+    }
+
+    @Test
+    void shardsTrackTopWithoutFullStat() throws Exception {
+        // Значение i встречается i раз: частоты разные, поэтому порядок самых частых значений однозначен
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            for (int k = 0; k < i; k++) {
+                lines.add(String.valueOf(i * 100));
+                lines.add("слово" + i);
+            }
+        }
+        Collections.shuffle(lines, new Random(2));
+        Path input = write("top.txt", String.join("\n", lines) + "\n");
+
+        Statistics expected = run(List.of("-f", "-o", dir.resolve("top-single").toString(), input.toString()));
+        for (int i = 1; i <= 3; i++) {
+            // Шарды без опции -f
+            run(List.of("--shard", i + "/3", "-o", dir.resolve("top-shards").toString(), input.toString()));
+        }
+        Statistics actual = run(List.of("merge", "-f", "-o", dir.resolve("top-shards").toString()));
+
+        assertEquals(10, actual.topInt().size());
+        assertEquals(expected.topInt(), actual.topInt());
+        assertEquals(expected.topStr(), actual.topStr());
+    }
+
+    /**
+     * Запускает утилиту так же, как {@link Main}, но без вывода итоговых сообщений о завершении программы
+     * @param args аргументы командной строки
+     * @return статистика запуска
+     */
+    private Statistics run(List<String> args) throws ParseException {
+        Parameters parameters = Parameters.ParseParameters.parse(args.toArray(new String[0]));
+        StatCalculator statCalculator = new StatCalculator(parameters.trackTop());
+        WriterHandler writerHandler = new WriterHandler(parameters.append(), parameters.gzipLevel(), parameters.gzipBlockSize());
+        Engine engine = Engine.builder()
+                .filter(parameters.filter())
+                .trackTop(parameters.trackTop())
+                .stopOnEmptyRound(true)
+                .readErrorHandler(FileHandler::printReadError)
+                .build();
+        Analyzer analyzer = new Analyzer(parameters, new FileHandler(writerHandler, statCalculator, engine, parameters.stream()), statCalculator);
+
+        if (parameters.merge()) {
+            analyzer.merge();
+        } else if (parameters.shardIndex() != null) {
+            analyzer.shard();
+        } else {
+            analyzer.analyze();
+        }
+        return statCalculator.snapshot();
+    }
+
+    /**
+     * @return статистика без самых частых значений (в однопроцессном запуске без опции -f они не ищутся)
+     */
+    private static Statistics withoutTop(Statistics s) {
+        return new Statistics(s.cntInt(), s.minInt(), s.maxInt(), s.sumInt(), s.middleInt(),
+                s.cntFloat(), s.minFloat(), s.maxFloat(), s.sumFloat(), s.middleFloat(),
+                s.cntStr(), s.minStr(), s.maxStr(), List.of(), List.of());
+    }
+
+    private Path write(String name, String text) throws IOException {
+        return Files.write(dir.resolve(name), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return содержимое файла или пустой массив, если файл не был создан
+     */
+    private byte[] read(Path file) throws IOException {
+        return Files.exists(file) ? Files.readAllBytes(file) : new byte[0];
+    }
+}
@@ -0,0 +1,206 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Проверка разбора строк по байтам ({@link Utf8}, {@link Engine#classify(byte[], int, int, LaneSinks, StatCalculator)})
+ * в сравнении с прежним способом: {@link BufferedReader#readLine()}, затем {@link Long#parseLong(String)} и {@link Double#parseDouble(String)}.
+ * Выходные данные и статистика должны совпадать байт в байт
+ */
+class Utf8Test {
+    /**
+     * Строки, на которых разбор по байтам легко ошибиться: пробелы, знаки, NaN и Infinity, шестнадцатеричные числа,
+     * цифры других алфавитов, некорректная и избыточная запись UTF-8, суррогаты
+     */
+    private static final List<byte[]> ADVERSARIAL = List.of(
+            bytes("42"), bytes(" 42"), bytes("42 "), bytes("\t42"), bytes("+7"), bytes("-0"), bytes("007"), bytes("--1"), bytes("+-1"),
+            bytes("9223372036854775807"), bytes("9223372036854775808"), bytes("-9223372036854775808"), bytes("-9223372036854775809"),
+            bytes("1.5"), bytes(".5"), bytes("5."), bytes("."), bytes("1e10"), bytes("1E-3"), bytes("1e"), bytes("e1"), bytes("  3.25  "),
+            bytes("1d"), bytes("2f"), bytes("1_000"), bytes("1,5"),
+            bytes("NaN"), bytes("+NaN"), bytes("-Infinity"), bytes("Infinity"), bytes("Infinityx"), bytes("1e400"), bytes("-1e400"), bytes("nan"), bytes("N"), bytes("I"),
+            bytes("0x1p3"), bytes("0x1.8p1"), bytes("-0X1P-2"), bytes("0x10"),
+            bytes("\u00001"), bytes("\u000b1"), bytes("\u001f2.5"),
+            bytes("١٢٣"), bytes("۴۵"), bytes("１２３"), bytes("१२"), bytes("+١"), bytes("1٣"), bytes("٣1"), bytes(" ١"), bytes("١ "),
+            bytes(" 12"), bytes("12 "), bytes(" 1"),
+            bytes("𝟏𝟐"), bytes("abc"), bytes("строка"), bytes("日本語"), bytes("😀"), bytes("é1"), bytes("1é"), bytes(" "), bytes("\t"),
+            new byte[]{(byte) 0xED, (byte) 0xA0, (byte) 0x80},
+            new byte[]{'1', (byte) 0xED, (byte) 0xB0, (byte) 0x80},
+            new byte[]{(byte) 0xC0, (byte) 0xAF},
+            new byte[]{(byte) 0xE0, (byte) 0x80, (byte) 0xB1},
+            new byte[]{(byte) 0xE2, (byte) 0x82},
+            new byte[]{(byte) 0xFF},
+            new byte[]{'a', (byte) 0xFF, 'b'},
+            new byte[]{'7', (byte) 0xFE},
+            new byte[]{(byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80},
+            new byte[]{(byte) 0xF0, (byte) 0x9F, (byte) 0x98, (byte) 0x80},
+            new byte[]{(byte) 0xF8, (byte) 0x88, (byte) 0x80, (byte) 0x80, (byte) 0x80},
+            new byte[]{(byte) 0xD9, (byte) 0xA1, (byte) 0xD9},
+            new byte[]{(byte) 0xEF, (byte) 0xBC, (byte) 0x91, (byte) 0x80});
+
+    @Test
+    void adversarialLinesMatchBaseline() throws IOException {
+        List<byte[]> lines = new ArrayList<>(ADVERSARIAL);
+        lines.add(new byte[0]);
+        assertSameAsBaseline(join(lines, new Random(1)));
+    }
+
+    @Test
+    void randomLinesMatchBaseline() throws IOException {
+        // Случайные строки из символов, которые чаще всего встречаются в числах и на границах проверок
+        byte[][] pieces = {
+                bytes("0"), bytes("7"), bytes("-"), bytes("+"), bytes("."), bytes("e"), bytes("E"), bytes("x"), bytes("p"),
+                bytes("N"), bytes("a"), bytes("I"), bytes("n"), bytes(" "), bytes("\t"), bytes("d"), bytes("é"), bytes("١"), bytes("１"),
+                bytes("😀"), {(byte) 0xFF}, {(byte) 0xC3}, {(byte) 0xED, (byte) 0xA0, (byte) 0x80}, {(byte) 0x80}, {0}};
+        Random random = new Random(42);
+        List<byte[]> lines = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int size = random.nextInt(6);
+            for (int k = 0; k < size; k++) {
+                line.writeBytes(pieces[random.nextInt(pieces.length)]);
+            }
+            lines.add(line.toByteArray());
+        }
+        assertSameAsBaseline(join(lines, random));
+    }
+
+    @Test
+    void mayBeNumberNeverRejectsNumbers() {
+        for (byte[] line : ADVERSARIAL) {
+            if (!Utf8.mayBeNumber(line, 0, line.length)) {
+                String text = new String(line, StandardCharsets.UTF_8);
+                assertThrows(NumberFormatException.class, () -> Long.parseLong(text), text);
+                assertThrows(NumberFormatException.class, () -> Double.parseDouble(text), text);
+            }
+        }
+    }
+
+    @Test
+    void utf16LengthMatchesStrictDecoder() {
+        for (byte[] line : ADVERSARIAL) {
+            // Строка в середине буфера, чтобы проверить учет смещения
+            byte[] buffer = new byte[line.length + 4];
+            System.arraycopy(line, 0, buffer, 2, line.length);
+
+            int expected;
+            try {
+                expected = StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(ByteBuffer.wrap(line))
+                        .length();
+            } catch (CharacterCodingException e) {
+                expected = -1;
+            }
+            assertEquals(expected, Utf8.utf16Length(buffer, 2, line.length), new String(line, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Сравнивает {@link Engine} (источники {@link LineReader} и {@link ByteBufferLineSource}) с прежним построчным разбором
+     * @param data входные данные
+     */
+    private static void assertSameAsBaseline(byte[] data) throws IOException {
+        Output expected = baseline(data);
+        assertSameOutput(expected, data, LineSource.of(new ByteArrayInputStream(data)));
+        assertSameOutput(expected, data, LineSource.of(ByteBuffer.wrap(data)));
+    }
+
+    private static void assertSameOutput(Output expected, byte[] data, LineSource source) {
+        Output actual = new Output();
+        actual.statistics = Engine.builder().trackTop(true).build().run(source, actual.sinks());
+
+        assertArrayEquals(expected.integers.toByteArray(), actual.integers.toByteArray(), "integers, " + data.length + " байт");
+        assertArrayEquals(expected.floats.toByteArray(), actual.floats.toByteArray(), "floats");
+        assertArrayEquals(expected.strings.toByteArray(), actual.strings.toByteArray(), "strings");
+        assertEquals(expected.statistics, actual.statistics);
+    }
+
+    /**
+     * Прежний разбор: строки читаются {@link BufferedReader}, пустые строки пропускаются,
+     * значения записываются в виде {@code value + "\n"} в UTF-8. {@code NaN} и бесконечности считаются строками
+     */
+    private static Output baseline(byte[] data) throws IOException {
+        Output output = new Output();
+        StatCalculator stat = new StatCalculator(true);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    long n = Long.parseLong(line);
+                    stat.updateIntStat(n);
+                    output.integers.writeBytes((n + "\n").getBytes(StandardCharsets.UTF_8));
+                } catch (NumberFormatException e) {
+                    double f;
+                    try {
+                        f = Double.parseDouble(line);
+                    } catch (NumberFormatException e2) {
+                        f = Double.NaN;
+                    }
+                    if (Double.isFinite(f)) {
+                        stat.updateFloatStat(f);
+                        output.floats.writeBytes((f + "\n").getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        stat.updateStringStat(line);
+                        output.strings.writeBytes((line + "\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        }
+
+        output.statistics = stat.snapshot();
+        return output;
+    }
+
+    /**
+     * Соединяет строки случайными разделителями {@code \n}, {@code \r} и {@code \r\n}
+     */
+    private static byte[] join(List<byte[]> lines, Random random) {
+        byte[][] endings = {{'\n'}, {'\r'}, {'\r', '\n'}};
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (byte[] line : lines) {
+            data.writeBytes(line);
+            data.writeBytes(endings[random.nextInt(endings.length)]);
+        }
+        return data.toByteArray();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Выходные данные каждого типа и статистика
+     */
+    private static class Output {
+        private final ByteArrayOutputStream integers = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream floats = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        private Statistics statistics;
+
+        private LaneSinks sinks() {
+            return new LaneSinks(LineSink.of(integers), LineSink.of(floats), LineSink.of(strings));
+        }
+    }
+}